@@ -11,6 +11,12 @@ repositories {
     maven { url = uri("https://packages.jetbrains.team/maven/p/ij/intellij-dependencies/") }
 }
 
+val benchmark by sourceSets.creating {
+    // the IDE and test framework come with the test classpath set up by the IntelliJ plugin
+    compileClasspath += sourceSets.main.get().output + sourceSets.test.get().compileClasspath
+    runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().runtimeClasspath
+}
+
 intellij {
     version.set("2024.1.7")
     type.set("IC")
@@ -41,7 +47,32 @@ tasks {
 dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
     testImplementation("org.junit.jupiter:junit-jupiter-engine:5.10.2")
+    "benchmarkImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "benchmarkAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 tasks.test{
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+tasks.register<Test>("benchmark") {
+    description = "Runs the PathFinder scenarios on synthetic projects and prints their measurements."
+    group = "verification"
+    testClassesDirs = benchmark.output.classesDirs
+    classpath = benchmark.runtimeClasspath
+    useJUnitPlatform()
+    testLogging.showStandardStreams = true
+    outputs.upToDateWhen { false }
+    dependsOn(tasks.prepareTestingSandbox)
+    // the sandbox and system properties of the IDE are configured by the IntelliJ plugin on the test task; they are
+    // copied when this task is configured, so nothing refers to another task at execution time (configuration cache)
+    val test = tasks.test.get()
+    systemProperties(test.systemProperties)
+    jvmArgs(test.jvmArgs.orEmpty())
+    jvmArgumentProviders.addAll(test.jvmArgumentProviders)
+}
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks of the call graph engine."
+    group = "verification"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args("CallGraphEngineBenchmark", "-prof", "gc")
+}
@@ -0,0 +1,130 @@
+package axan18.methodcallpathdetectorplugin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH microbenchmarks of the PSI-independent graph engine over synthetic call graphs.
+ * Run with {@code ./gradlew jmh}, which adds the GC profiler for allocations; the nodes counter reports how many
+ * methods a search expanded per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallGraphEngineBenchmark {
+    @Param({"SMALL", "WIDE", "DEEP", "CYCLIC"})
+    public String shape;
+
+    private CsrCallGraph graph;
+    private int start;
+    private int target;
+
+    /**
+     * Methods expanded by the searches, reported by JMH per operation next to the time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Expansions {
+        public long nodes;
+    }
+
+    @Setup
+    public void generate() {
+        SyntheticProject project = new SyntheticProject(switch (shape) {
+            case "WIDE" -> SyntheticProject.Shape.WIDE;
+            case "DEEP" -> SyntheticProject.Shape.DEEP;
+            case "CYCLIC" -> SyntheticProject.Shape.CYCLIC;
+            default -> SyntheticProject.Shape.SMALL;
+        });
+        graph = project.toCallGraph();
+        start = project.getStart();
+        target = project.getTarget();
+    }
+
+    @Benchmark
+    public int[] shortestPath(Expansions expansions) {
+        CountingCallGraph counting = new CountingCallGraph(graph);
+        int[] path = CallGraphEngine.findShortestPath(counting, start, target);
+        expansions.nodes += counting.expanded;
+        return path;
+    }
+
+    @Benchmark
+    public int enumerateLimitedPaths(Expansions expansions) {
+        CountingCallGraph counting = new CountingCallGraph(graph);
+        int[] found = {0};
+        CallGraphEngine.enumeratePaths(counting, target, start, new BitSet(), SearchLimits.DEFAULT.maxDepth(),
+                CallGraphEngine.CallFilter.ALL, (branch, length) -> ++found[0] < SearchLimits.DEFAULT.maxPaths());
+        expansions.nodes += counting.expanded;
+        return found[0];
+    }
+
+    // results are returned as counts, the generated benchmark code lives in another package than the engine types
+
+    @Benchmark
+    public int condensedPaths() {
+        return CallGraphEngine.findCondensedPaths(graph, start, target, SearchLimits.DEFAULT).paths().size();
+    }
+
+    @Benchmark
+    public int kShortestPaths() {
+        return CallGraphEngine.findShortestPaths(graph, start, target, 10).size();
+    }
+
+    @Benchmark
+    public boolean reachabilityIndex() {
+        return new ReachabilityIndex(graph).canReach(start, target);
+    }
+
+    /**
+     * Counts the methods whose callers or callees a search asked for.
+     */
+    static final class CountingCallGraph implements CallGraph {
+        private final CallGraph graph;
+        private final BitSet seen = new BitSet();
+        long expanded;
+
+        CountingCallGraph(CallGraph graph) {
+            this.graph = graph;
+        }
+
+        private void expand(int method) {
+            if (!seen.get(method)) {
+                seen.set(method);
+                expanded++;
+            }
+        }
+
+        @Override
+        public int nodeCount() {
+            return graph.nodeCount();
+        }
+
+        @Override
+        public int callerCount(int method) {
+            expand(method);
+            return graph.callerCount(method);
+        }
+
+        @Override
+        public int caller(int method, int index) {
+            return graph.caller(method, index);
+        }
+
+        @Override
+        public int calleeCount(int method) {
+            expand(method);
+            return graph.calleeCount(method);
+        }
+
+        @Override
+        public int callee(int method, int index) {
+            return graph.callee(method, index);
+        }
+    }
+}
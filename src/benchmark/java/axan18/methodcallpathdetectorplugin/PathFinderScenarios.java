@@ -0,0 +1,109 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase5;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end scenarios of PathFinder on synthetic projects in the light test fixture, run with
+ * {@code ./gradlew benchmark}. Every scenario reports its wall time, the bytes allocated by the query thread and
+ * the {@link QueryStats} counters of its query: methods expanded, references scanned and caller cache hits and misses.
+ */
+public class PathFinderScenarios extends LightJavaCodeInsightFixtureTestCase5 {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void small() {
+        runScenarios("small", SyntheticProject.Shape.SMALL);
+    }
+
+    @Test
+    void wide() {
+        runScenarios("wide", SyntheticProject.Shape.WIDE);
+    }
+
+    @Test
+    void deep() {
+        runScenarios("deep", SyntheticProject.Shape.DEEP);
+    }
+
+    @Test
+    void cyclic() {
+        runScenarios("cyclic", SyntheticProject.Shape.CYCLIC);
+    }
+
+    private void runScenarios(String name, SyntheticProject.Shape shape) {
+        SyntheticProject generated = new SyntheticProject(shape);
+        for (Map.Entry<String, String> file : generated.toSources().entrySet()) {
+            getFixture().addFileToProject(file.getKey(), file.getValue());
+        }
+        Project project = getFixture().getProject();
+        PsiMethod start = findMethod(project, SyntheticProject.methodName(generated.getStart()));
+        PsiMethod target = findMethod(project, SyntheticProject.methodName(generated.getTarget()));
+        System.out.printf("%s: %d methods, %s%n", name, generated.getMethodCount(), shape);
+
+        boolean[] found = {false};
+        measure(name, "all paths, cold", stats -> new PathFinder(start, stats).processCallPaths(target,
+                SearchLimits.DEFAULT, path -> found[0] = true));
+        assertTrue(found[0]);
+        measure(name, "all paths, warm", stats -> new PathFinder(start, stats).processCallPaths(target,
+                SearchLimits.DEFAULT, path -> true));
+        measure(name, "shortest path",
+                stats -> new PathFinder(start, stats).findCallPaths(target, PathFinder.SearchEngine.SHORTEST_PATH));
+        measure(name, "10 shortest paths", stats -> new PathFinder(start, stats).findShortestCallPaths(target, 10));
+        ProjectCallGraph graph = ProjectCallGraph.getInstance(project);
+        measure(name, "call graph build", stats -> {
+            graph.update();
+            return null;
+        });
+        assertTrue(Boolean.TRUE.equals(query(() -> graph.canReach(start, target))));
+        assertFalse(Boolean.TRUE.equals(query(() -> graph.canReach(target, start))));
+    }
+
+    /**
+     * Runs a scenario once in a read action and prints its measurements, with the counters of its query.
+     */
+    private static void measure(String shape, String scenario, Function<QueryStats, ?> query) {
+        QueryStats stats = new QueryStats(scenario);
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        query(() -> query.apply(stats));
+        long wallTime = System.nanoTime() - startTime;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%-8s %-18s %10.2f ms %14d bytes %8d expanded %8d references %8d hits %8d misses%n",
+                shape, scenario, wallTime / 1e6, allocated, stats.getMethodsExpanded(), stats.getReferencesScanned(),
+                stats.getCacheHits(), stats.getCacheMisses());
+    }
+
+    private static <T> T query(Supplier<T> query) {
+        return ProgressManager.getInstance().runProcess(() -> ReadAction.compute(query::get), new EmptyProgressIndicator());
+    }
+
+    private static PsiMethod findMethod(Project project, String name) {
+        return query(() -> {
+            for (PsiMethod method : PsiShortNamesCache.getInstance(project)
+                    .getMethodsByName(name, GlobalSearchScope.projectScope(project))) {
+                if (method.getParameterList().getParametersCount() == 1
+                        && "int".equals(method.getParameterList().getParameters()[0].getType().getCanonicalText())) {
+                    return method; // the called one, not an overload
+                }
+            }
+            throw new AssertionError("Generated method not found: " + name);
+        });
+    }
+}
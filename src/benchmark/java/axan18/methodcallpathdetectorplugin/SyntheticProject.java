@@ -0,0 +1,163 @@
+package axan18.methodcallpathdetectorplugin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic Java project of a configurable shape, generated both as a call graph for the engine benchmarks
+ * and as Java sources for the PathFinder scenarios, so both measure the same calls.
+ * Methods are laid out in layers: the start method calls methods of the first layer, every layer calls the next one,
+ * and the last layer calls the target. Back calls to earlier layers add cycles, uncalled overloads of every method
+ * make each call site ambiguous by name and arity, so it has to be resolved.
+ */
+final class SyntheticProject {
+    private static final int METHODS_PER_CLASS = 50;
+    private static final String[] OVERLOAD_TYPES = {"String", "long", "double", "Object", "char", "boolean", "float"};
+
+    private final Shape shape;
+    private final List<int[]> layers = new ArrayList<>(); // ids of the methods of every layer
+    private final List<List<Integer>> callees = new ArrayList<>(); // by caller id
+    private final int start;
+    private final int target;
+
+    /**
+     * The shape of a generated project.
+     *
+     * @param depth the number of layers between the start and the target method
+     * @param fanOut the number of methods of the next layer every method calls
+     * @param fanIn the average number of callers of a method; the first layer has fan-out methods, the following ones
+     *              grow when the fan-in is lower than the fan-out
+     * @param maxWidth the maximum number of methods in a layer
+     * @param cycleDensity the share of methods also calling a method of an earlier layer, between 0 and 1
+     * @param overloads the number of uncalled overloads of every method, at most 7
+     * @param seed the seed of the random choices, the same shape and seed always give the same project
+     */
+    record Shape(int depth, int fanOut, int fanIn, int maxWidth, double cycleDensity, int overloads, long seed) {
+        static final Shape SMALL = new Shape(5, 3, 2, 20, 0.05, 1, 42);
+        static final Shape WIDE = new Shape(6, 8, 2, 400, 0.0, 2, 42);
+        static final Shape DEEP = new Shape(25, 2, 2, 4, 0.0, 1, 42);
+        static final Shape CYCLIC = new Shape(8, 3, 2, 60, 0.3, 1, 42);
+
+        Shape {
+            if (depth <= 0 || fanOut <= 0 || fanIn <= 0 || maxWidth <= 0 || overloads < 0
+                    || overloads > OVERLOAD_TYPES.length || cycleDensity < 0 || cycleDensity > 1) {
+                throw new IllegalArgumentException("Invalid shape: " + this);
+            }
+        }
+    }
+
+    SyntheticProject(Shape shape) {
+        this.shape = shape;
+        Random random = new Random(shape.seed());
+        start = addLayer(1)[0];
+        int width = Math.min(shape.maxWidth(), shape.fanOut()); // the start method calls the whole first layer
+        for (int layer = 1; layer <= shape.depth(); layer++) {
+            addLayer(width);
+            double grown = Math.ceil((double) width * shape.fanOut() / shape.fanIn());
+            width = (int) Math.min(shape.maxWidth(), grown);
+        }
+        target = addLayer(1)[0];
+        for (int layer = 0; layer + 1 < layers.size(); layer++) {
+            int[] callers = layers.get(layer);
+            int[] next = layers.get(layer + 1);
+            for (int i = 0; i < Math.max(callers.length, next.length); i++) { // every method gets a caller
+                addCall(callers[i % callers.length], next[i % next.length]);
+            }
+            for (int caller : callers) {
+                for (int i = 1; i < Math.min(shape.fanOut(), next.length); i++) {
+                    addCall(caller, next[random.nextInt(next.length)]);
+                }
+                if (layer > 0 && random.nextDouble() < shape.cycleDensity()) {
+                    int[] earlier = layers.get(1 + random.nextInt(layer));
+                    addCall(caller, earlier[random.nextInt(earlier.length)]);
+                }
+            }
+        }
+    }
+
+    private int[] addLayer(int width) {
+        int[] ids = new int[width];
+        for (int i = 0; i < width; i++) {
+            ids[i] = callees.size();
+            callees.add(new ArrayList<>());
+        }
+        layers.add(ids);
+        return ids;
+    }
+
+    private void addCall(int caller, int callee) {
+        List<Integer> calls = callees.get(caller);
+        if (!calls.contains(callee)) {
+            calls.add(callee);
+        }
+    }
+
+    Shape getShape() {
+        return shape;
+    }
+
+    int getMethodCount() {
+        return callees.size();
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the calls as a call graph with the ids of the generated methods
+     */
+    CsrCallGraph toCallGraph() {
+        CsrCallGraph.Builder builder = new CsrCallGraph.Builder();
+        for (int caller = 0; caller < callees.size(); caller++) {
+            for (int callee : callees.get(caller)) {
+                builder.addCall(caller, callee);
+            }
+        }
+        return builder.build(callees.size());
+    }
+
+    /**
+     * @param method the id of a generated method
+     * @return the name of the method, unique in the project
+     */
+    static String methodName(int method) {
+        return "m" + method;
+    }
+
+    /**
+     * Generates the Java sources: the methods of every layer are split into classes of at most 50 static methods.
+     *
+     * @return the text of every file by its name
+     */
+    Map<String, String> toSources() {
+        Map<String, String> files = new LinkedHashMap<>();
+        for (int first = 0; first < callees.size(); first += METHODS_PER_CLASS) { // ids follow the layers
+            StringBuilder text = new StringBuilder("class ").append(className(first)).append(" {\n");
+            for (int method = first; method < Math.min(callees.size(), first + METHODS_PER_CLASS); method++) {
+                text.append("    static void ").append(methodName(method)).append("(int x) {\n");
+                for (int callee : callees.get(method)) {
+                    text.append("        ").append(className(callee)).append('.').append(methodName(callee)).append("(x);\n");
+                }
+                text.append("    }\n");
+                for (int i = 0; i < shape.overloads(); i++) {
+                    text.append("    static void ").append(methodName(method)).append('(')
+                            .append(OVERLOAD_TYPES[i]).append(" x) {}\n");
+                }
+            }
+            files.put(className(first) + ".java", text.append("}\n").toString());
+        }
+        return files;
+    }
+
+    private static String className(int method) {
+        return "Generated" + method / METHODS_PER_CLASS;
+    }
+}
@@ -0,0 +1,223 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Parts of a Java file whose code runs asynchronously, such as a new thread or the arguments of an executor's submit
+ * call. Calls made there do not belong to any call path. The parts are found once per file with the rules configured
+ * in {@link CallPathSettings} and cached until the Java code or the rules change, so checking an element is a binary
+ * search over the sorted ranges of its file.
+ */
+final class AsyncBoundaries {
+    /**
+     * The rules used until the user changes them, see {@link Rule} for their syntax.
+     */
+    static final List<String> DEFAULT_RULES = List.of(
+            "java.lang.Thread",
+            "java.lang.Thread#startVirtualThread",
+            "java.lang.Thread.Builder#start",
+            "java.lang.Thread.Builder#unstarted",
+            "java.util.concurrent.Executor#execute",
+            "java.util.concurrent.ExecutorService#submit",
+            "java.util.concurrent.ExecutorService#invokeAll",
+            "java.util.concurrent.ExecutorService#invokeAny",
+            "java.util.concurrent.ScheduledExecutorService#schedule",
+            "java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate",
+            "java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay",
+            "java.util.concurrent.CompletableFuture#*Async");
+
+    private static final AsyncBoundaries NONE = new AsyncBoundaries(new int[0], new int[0]);
+
+    private final int[] starts; // disjoint ranges sorted by their start
+    private final int[] ends;
+
+    private AsyncBoundaries(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * A rule marking code started by matching calls as asynchronous. {@code pkg.Class} matches constructor calls
+     * of the class, with their arguments and anonymous class body. {@code pkg.Class#method} matches the arguments
+     * of calls of the method declared in the class or a subclass, {@code *#method} of calls of methods with the name
+     * in any class. A method name starting with {@code *} matches every name ending with the rest, like {@code *Async}.
+     *
+     * @param className the qualified name of the class, or null for any class
+     * @param methodName the name of the method, or null for constructors
+     */
+    record Rule(@Nullable String className, @Nullable String methodName) {
+        /**
+         * @param text the rule as written in the settings
+         * @return the rule, or null if the text is blank
+         */
+        static @Nullable Rule parse(@NotNull String text) {
+            String rule = text.trim();
+            if (rule.isEmpty()) {
+                return null;
+            }
+            int separator = rule.indexOf('#');
+            if (separator < 0) {
+                return new Rule(rule, null);
+            }
+            String className = rule.substring(0, separator).trim();
+            return new Rule(className.isEmpty() || "*".equals(className) ? null : className,
+                    rule.substring(separator + 1).trim());
+        }
+
+        boolean matchesMethodName(String name) {
+            if (methodName == null || name == null) {
+                return false;
+            }
+            return methodName.startsWith("*") ? name.endsWith(methodName.substring(1)) : methodName.equals(name);
+        }
+
+        boolean matchesClassName(String shortName) {
+            return className != null && (className.equals(shortName) || className.endsWith("." + shortName));
+        }
+    }
+
+    /**
+     * Checks if the specified element is in a part of its file that runs asynchronously.
+     *
+     * @param element the element to check
+     * @return true if the element is inside a new thread, an executor task or another configured boundary
+     */
+    static boolean contains(@NotNull PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        TextRange range = element.getTextRange();
+        return file != null && range != null && forFile(file).contains(range.getStartOffset());
+    }
+
+    /**
+     * Returns the asynchronous parts of the specified file, computed on first use.
+     *
+     * @param file the file to get the asynchronous parts of
+     * @return the asynchronous parts of the file
+     */
+    static AsyncBoundaries forFile(@NotNull PsiFile file) {
+        return CachedValuesManager.getCachedValue(file, () -> {
+            Project project = file.getProject();
+            CallPathSettings settings = CallPathSettings.getInstance(project);
+            return CachedValueProvider.Result.create(compute(file, parseRules(settings.getAsyncBoundaryRules())),
+                    PsiModificationTracker.getInstance(project).forLanguage(JavaLanguage.INSTANCE),
+                    settings.getModificationTracker());
+        });
+    }
+
+    static List<Rule> parseRules(List<String> texts) {
+        List<Rule> rules = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            Rule rule = Rule.parse(text);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @param offset the offset in the file
+     * @return true if the offset is inside an asynchronous part of the file
+     */
+    boolean contains(int offset) {
+        int index = Arrays.binarySearch(starts, offset);
+        if (index >= 0) {
+            return true;
+        }
+        int previous = -index - 2; // the last range starting before the offset
+        return previous >= 0 && offset < ends[previous];
+    }
+
+    /**
+     * Finds the asynchronous parts of a file in a single walk. Names are compared before anything is resolved,
+     * so only calls that may match a rule cost a resolve.
+     */
+    private static AsyncBoundaries compute(PsiFile file, List<Rule> rules) {
+        if (rules.isEmpty()) {
+            return NONE;
+        }
+        List<TextRange> ranges = new ArrayList<>();
+        file.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitNewExpression(@NotNull PsiNewExpression expression) {
+                super.visitNewExpression(expression);
+                PsiJavaCodeReferenceElement reference = expression.getClassReference(); // null for arrays
+                if (reference != null && isStartedByConstructor(reference, rules)) {
+                    ranges.add(expression.getTextRange());
+                }
+            }
+
+            @Override
+            public void visitMethodCallExpression(@NotNull PsiMethodCallExpression expression) {
+                super.visitMethodCallExpression(expression);
+                if (isStartedByMethod(expression, rules)) {
+                    ranges.add(expression.getArgumentList().getTextRange());
+                }
+            }
+        });
+        if (ranges.isEmpty()) {
+            return NONE;
+        }
+        ranges.sort(Comparator.comparingInt(TextRange::getStartOffset));
+        int[] starts = new int[ranges.size()];
+        int[] ends = new int[ranges.size()];
+        int count = 0;
+        for (TextRange range : ranges) { // nested and overlapping ranges are merged
+            if (count > 0 && range.getStartOffset() <= ends[count - 1]) {
+                ends[count - 1] = Math.max(ends[count - 1], range.getEndOffset());
+            } else {
+                starts[count] = range.getStartOffset();
+                ends[count++] = range.getEndOffset();
+            }
+        }
+        return new AsyncBoundaries(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count));
+    }
+
+    private static boolean isStartedByConstructor(PsiJavaCodeReferenceElement reference, List<Rule> rules) {
+        String shortName = reference.getReferenceName();
+        for (Rule rule : rules) {
+            if (rule.methodName() == null && rule.matchesClassName(shortName)
+                    && rule.className().equals(reference.getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStartedByMethod(PsiMethodCallExpression call, List<Rule> rules) {
+        String name = call.getMethodExpression().getReferenceName();
+        PsiClass declaringClass = null;
+        boolean resolved = false;
+        for (Rule rule : rules) {
+            if (!rule.matchesMethodName(name)) {
+                continue;
+            }
+            if (rule.className() == null) {
+                return true;
+            }
+            if (!resolved) {
+                PsiMethod method = call.resolveMethod();
+                declaringClass = method != null ? method.getContainingClass() : null;
+                resolved = true;
+            }
+            if (declaringClass != null && InheritanceUtil.isInheritor(declaringClass, false, rule.className())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,216 @@
+package axan18.methodcallpathdetectorplugin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Cache holding the recently used values strongly, up to a budget of their estimated size in bytes, and the others
+ * softly. When the strong values exceed the budget, the least recently used ones are demoted to soft references,
+ * which the garbage collector clears under memory pressure; a soft value used again is promoted back.
+ * So repeated queries stay fast while the heap the cache pins never exceeds the budget. Thread-safe.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class BoundedCache<K, V> {
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    private final LinkedHashMap<K, V> strong = new LinkedHashMap<>(16, 0.75f, true); // least recently used first
+    private final Map<K, SoftValue<K, V>> soft = new HashMap<>();
+    private final ReferenceQueue<V> collectedValues = new ReferenceQueue<>();
+    private long budget;
+    private long strongWeight;
+    private long hits;
+    private long softHits;
+    private long misses;
+    private long evictions;
+    private long collected;
+
+    /**
+     * Soft reference remembering its key, so the entry can be removed once the value is collected.
+     */
+    private static final class SoftValue<K, V> extends SoftReference<V> {
+        private final K key;
+
+        SoftValue(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The counters and the size of a cache.
+     *
+     * @param strongEntries the number of values held strongly
+     * @param softEntries the number of values held softly, including ones collected but not yet removed
+     * @param strongBytes the estimated size of the values held strongly
+     * @param budgetBytes the budget of the values held strongly
+     * @param hits the lookups answered by a strong value
+     * @param softHits the lookups answered by a soft value
+     * @param misses the lookups not answered
+     * @param evictions the values demoted from strong to soft
+     * @param collected the soft values cleared by the garbage collector
+     */
+    record Stats(int strongEntries, int softEntries, long strongBytes, long budgetBytes, long hits, long softHits,
+                 long misses, long evictions, long collected) {
+        @Override
+        public String toString() {
+            return strongEntries + " entries in " + strongBytes / 1024 + " of " + budgetBytes / 1024 + " KB, "
+                    + softEntries + " soft; " + hits + " hits, " + softHits + " soft hits, " + misses + " misses, "
+                    + evictions + " evicted, " + collected + " collected";
+        }
+    }
+
+    /**
+     * @param budget the estimated size in bytes up to which values are held strongly
+     * @param weigher the estimated size in bytes of an entry with its key and value
+     */
+    BoundedCache(long budget, @NotNull ToLongBiFunction<? super K, ? super V> weigher) {
+        this.budget = budget;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the cached value of a key, loading it on a miss. The loader runs outside any lock, so concurrent
+     * callers may load the same key twice, but only the first value is kept.
+     *
+     * @param key the key
+     * @param loader the function computing the value of a key
+     * @return the cached or loaded value
+     */
+    @NotNull V get(@NotNull K key, @NotNull Function<? super K, ? extends V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        V loaded = loader.apply(key);
+        synchronized (this) {
+            V previous = strong.get(key);
+            if (previous != null) {
+                return previous;
+            }
+            put(key, loaded);
+            return loaded;
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value of the key, promoted to the most recently used, or null if not cached
+     */
+    synchronized @Nullable V getIfPresent(@NotNull K key) {
+        removeCollected();
+        V value = strong.get(key);
+        if (value != null) {
+            hits++;
+            return value;
+        }
+        SoftValue<K, V> softValue = soft.get(key);
+        value = softValue != null ? softValue.get() : null;
+        if (value != null) {
+            softHits++;
+            put(key, value);
+            return value;
+        }
+        if (softValue != null) { // collected, but not queued yet
+            soft.remove(key);
+            collected++;
+        }
+        misses++;
+        return null;
+    }
+
+    private void put(K key, V value) {
+        soft.remove(key);
+        V replaced = strong.put(key, value);
+        if (replaced != null) {
+            strongWeight -= weigher.applyAsLong(key, replaced);
+        }
+        strongWeight += weigher.applyAsLong(key, value);
+        evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<K, V>> leastRecentlyUsed = strong.entrySet().iterator();
+        while (strongWeight > budget && leastRecentlyUsed.hasNext()) {
+            Map.Entry<K, V> entry = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            strongWeight -= weigher.applyAsLong(entry.getKey(), entry.getValue());
+            soft.put(entry.getKey(), new SoftValue<>(entry.getKey(), entry.getValue(), collectedValues));
+            evictions++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void removeCollected() {
+        SoftValue<K, V> softValue;
+        while ((softValue = (SoftValue<K, V>) collectedValues.poll()) != null) {
+            if (soft.get(softValue.key) == softValue) {
+                soft.remove(softValue.key);
+                collected++;
+            }
+        }
+    }
+
+    /**
+     * Changes the budget, demoting the least recently used values at once if the new budget is smaller.
+     *
+     * @param budget the estimated size in bytes up to which values are held strongly
+     */
+    synchronized void setBudget(long budget) {
+        if (this.budget != budget) {
+            this.budget = budget;
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * Removes the entries matching a filter, strong and soft ones alike. Collected soft values are removed too.
+     *
+     * @param filter the filter of the entries to remove
+     */
+    synchronized void removeIf(@NotNull BiPredicate<? super K, ? super V> filter) {
+        removeCollected();
+        Iterator<Map.Entry<K, V>> strongEntries = strong.entrySet().iterator();
+        while (strongEntries.hasNext()) {
+            Map.Entry<K, V> entry = strongEntries.next();
+            if (filter.test(entry.getKey(), entry.getValue())) {
+                strongEntries.remove();
+                strongWeight -= weigher.applyAsLong(entry.getKey(), entry.getValue());
+            }
+        }
+        Iterator<Map.Entry<K, SoftValue<K, V>>> softEntries = soft.entrySet().iterator();
+        while (softEntries.hasNext()) {
+            Map.Entry<K, SoftValue<K, V>> entry = softEntries.next();
+            V value = entry.getValue().get();
+            if (value == null) {
+                softEntries.remove();
+                collected++;
+            } else if (filter.test(entry.getKey(), value)) {
+                softEntries.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached values, strong and soft
+     */
+    synchronized int size() {
+        removeCollected();
+        return strong.size() + soft.size();
+    }
+
+    synchronized @NotNull Stats getStats() {
+        removeCollected();
+        return new Stats(strong.size(), soft.size(), strongWeight, budget, hits, softHits, misses, evictions, collected);
+    }
+}
@@ -0,0 +1,30 @@
+package axan18.methodcallpathdetectorplugin;
+
+/**
+ * Directed call graph over dense int method ids, independent of PSI, so the path algorithms can run and be measured
+ * on their own. Edges are accessed by index, which lets array-backed graphs be scanned without allocating.
+ */
+public interface CallGraph {
+    /**
+     * @return the number of methods in the graph; a lazily explored graph grows as the callers of its methods are resolved
+     */
+    int nodeCount();
+
+    int callerCount(int method);
+
+    /**
+     * @param method the id of the called method
+     * @param index the index of the caller, lower than {@link #callerCount(int)}
+     * @return the id of the caller
+     */
+    int caller(int method, int index);
+
+    int calleeCount(int method);
+
+    /**
+     * @param method the id of the calling method
+     * @param index the index of the callee, lower than {@link #calleeCount(int)}
+     * @return the id of the callee
+     */
+    int callee(int method, int index);
+}
@@ -0,0 +1,171 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileFilter;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Reports changed Java files to the caches derived from calls. Edits come from PSI events, changes made outside
+ * the editor, such as a VCS update, from VFS events. A directory added, deleted, moved or renamed reports every Java
+ * file under it, and a file renamed to or from the Java extension is reported too. Files about to be deleted or moved
+ * are reported before the change, while they can still be walked. Only files in the content of this project are
+ * reported: the VFS events of other projects, libraries and excluded directories are ignored. Listeners are called
+ * in the write action making the change, so they should only record the file and do the work later.
+ */
+@Service(Service.Level.PROJECT)
+public final class CallGraphChangeTracker implements Disposable {
+    private final List<Consumer<VirtualFile>> listeners = new CopyOnWriteArrayList<>();
+    private final ProjectFileIndex fileIndex;
+
+    public CallGraphChangeTracker(@NotNull Project project) {
+        this.fileIndex = ProjectFileIndex.getInstance(project);
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(@NotNull PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childMoved(@NotNull PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            private void changed(PsiTreeChangeEvent event) {
+                PsiFile file = event.getFile();
+                if (file != null) {
+                    if (file instanceof PsiJavaFile && file.getVirtualFile() != null) {
+                        fileChanged(file.getVirtualFile());
+                    }
+                } else if (event.getChild() instanceof PsiFile child) { // a file added to or moved between directories
+                    javaFilesChanged(child.getVirtualFile());
+                } else if (event.getChild() instanceof PsiDirectory directory) {
+                    javaFilesChanged(directory.getVirtualFile());
+                }
+            }
+        }, this);
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void before(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if (event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent) {
+                        javaFilesChanged(event.getFile());
+                    }
+                }
+            }
+
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    VirtualFile file = event.getFile();
+                    if (event instanceof VFilePropertyChangeEvent property && property.isRename() && file != null
+                            && !file.isDirectory()) {
+                        if (isJava(String.valueOf(property.getOldValue())) || isJava(String.valueOf(property.getNewValue()))) {
+                            fileChanged(file);
+                        }
+                    } else if (event instanceof VFileCopyEvent copy) {
+                        javaFilesChanged(copy.findCreatedFile());
+                    } else if (!(event instanceof VFileDeleteEvent)) {
+                        javaFilesChanged(file);
+                    }
+                }
+            }
+        });
+    }
+
+    public static CallGraphChangeTracker getInstance(@NotNull Project project) {
+        return project.getService(CallGraphChangeTracker.class);
+    }
+
+    /**
+     * Registers a listener receiving every changed Java file, possibly several times per change.
+     *
+     * @param listener the listener to call with changed files
+     * @param parentDisposable the disposable removing the listener
+     */
+    public void addListener(@NotNull Consumer<VirtualFile> listener, @NotNull Disposable parentDisposable) {
+        listeners.add(listener);
+        Disposer.register(parentDisposable, () -> listeners.remove(listener));
+    }
+
+    /**
+     * Reports the specified file if it is a Java file, or every Java file under it if it is a directory.
+     *
+     * @param file the changed file or directory
+     */
+    private void javaFilesChanged(@Nullable VirtualFile file) {
+        if (file == null || !file.isValid()) {
+            return;
+        }
+        if (!file.isDirectory()) {
+            if (isJava(file.getName())) {
+                fileChanged(file);
+            }
+            return;
+        }
+        VirtualFileFilter inContent = entry -> !entry.isDirectory() || fileIndex.isInContent(entry); // not excluded ones
+        VfsUtilCore.iterateChildrenRecursively(file, inContent, child -> {
+            if (!child.isDirectory() && isJava(child.getName())) {
+                fileChanged(child);
+            }
+            return true;
+        });
+    }
+
+    private static boolean isJava(String fileName) {
+        return fileName.endsWith("." + JavaFileType.DEFAULT_EXTENSION);
+    }
+
+    private void fileChanged(VirtualFile file) {
+        if (!fileIndex.isInContent(file)) {
+            return;
+        }
+        for (Consumer<VirtualFile> listener : listeners) {
+            listener.accept(file);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        listeners.clear();
+    }
+}
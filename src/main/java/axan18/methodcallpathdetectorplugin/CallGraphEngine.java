@@ -0,0 +1,335 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.progress.ProgressManager;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.*;
+
+/**
+ * Call path algorithms over a {@link CallGraph}. They work on int ids only and never touch PSI,
+ * so the same code runs on the lazily resolved graph of a query and on an array-backed {@link CsrCallGraph}.
+ */
+final class CallGraphEngine {
+    static final int NONE = -1;
+
+    private CallGraphEngine() {
+    }
+
+    /**
+     * Receives branches found by the backward search.
+     */
+    interface BranchConsumer {
+        /**
+         * @param branch the method ids from the target to the start method, valid only during the call
+         * @param length the number of methods in the branch
+         * @return false to stop the search, true to continue
+         */
+        boolean accept(int[] branch, int length);
+    }
+
+    /**
+     * Decides which calls the backward search may follow.
+     */
+    interface CallFilter {
+        CallFilter ALL = (caller, callee) -> true;
+
+        boolean allows(int caller, int callee);
+    }
+
+    /**
+     * Call paths over the condensed graph.
+     *
+     * @param components the strongly connected components of the graph
+     * @param paths the component paths, each from the start component to the target component
+     */
+    record Condensation(StronglyConnectedComponents components, List<int[]> paths) {
+    }
+
+    /**
+     * Walks callers backwards depth-first. The branch is kept in a reusable int array and the visited methods
+     * in a bitset that is updated on push and pop, so expanding a method allocates nothing.
+     *
+     * @param graph the call graph
+     * @param target the id of the method to find call paths to
+     * @param start the id of the method the paths start at, or {@link #NONE}
+     * @param visited the ids of methods that must not be entered, updated during the search and restored afterwards
+     * @param maxDepth the maximum number of calls in a path
+     * @param filter the filter of calls the search may follow
+     * @param consumer the consumer of found branches
+     * @return false if the consumer asked to stop, true otherwise
+     */
+    static boolean enumeratePaths(CallGraph graph, int target, int start, BitSet visited, int maxDepth, CallFilter filter,
+                                  BranchConsumer consumer) {
+        int[] branch = new int[16];
+        int[] cursors = new int[16]; // index of the next caller to expand, per branch position
+        branch[0] = target;
+        if (target == start) {
+            return consumer.accept(branch, 1);
+        }
+        visited.set(target);
+        int depth = 0;
+        while (depth >= 0) {
+            ProgressManager.checkCanceled(); // lets a non-blocking read action restart when a write action comes
+            int method = branch[depth];
+            if (depth < maxDepth && cursors[depth] < graph.callerCount(method)) {
+                int caller = graph.caller(method, cursors[depth]++);
+                if (visited.get(caller) || !filter.allows(caller, method)) {
+                    continue;
+                }
+                if (depth + 2 > branch.length) {
+                    branch = Arrays.copyOf(branch, branch.length * 2);
+                    cursors = Arrays.copyOf(cursors, branch.length);
+                }
+                branch[depth + 1] = caller;
+                if (caller == start) {
+                    if (!consumer.accept(branch, depth + 2)) {
+                        for (int i = 0; i <= depth; i++) {
+                            visited.clear(branch[i]);
+                        }
+                        return false;
+                    }
+                    continue;
+                }
+                depth++;
+                cursors[depth] = 0;
+                visited.set(caller);
+            } else {
+                visited.clear(method);
+                depth--;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds call paths over the condensed graph, in which every cycle of mutually recursive methods is a single step.
+     * The acyclic graph of components is searched without any visited sets, expanding only components that lead
+     * to the start method, so recursion costs linear time.
+     *
+     * @param graph the fully explored call graph
+     * @param start the id of the start method
+     * @param target the id of the target method
+     * @param limits the maximum number of condensed paths and their maximum number of steps
+     * @return the components of the graph and the component paths found
+     */
+    static Condensation findCondensedPaths(CallGraph graph, int start, int target, SearchLimits limits) {
+        StronglyConnectedComponents components = new StronglyConnectedComponents(graph);
+        int[][] condensed = components.condense(graph);
+        int startComponent = components.componentOf(start);
+        boolean[] leadsToStart = new boolean[components.count()];
+        for (int c = 0; c < components.count(); c++) { // callers' components are numbered lower, so they are known already
+            leadsToStart[c] = c == startComponent;
+            for (int caller : condensed[c]) {
+                leadsToStart[c] |= leadsToStart[caller];
+            }
+        }
+        List<int[]> paths = new ArrayList<>();
+        int targetComponent = components.componentOf(target);
+        if (!leadsToStart[targetComponent]) {
+            return new Condensation(components, paths);
+        }
+        int[] branch = new int[16];
+        int[] cursors = new int[16];
+        branch[0] = targetComponent;
+        int depth = 0;
+        while (depth >= 0 && paths.size() < limits.maxPaths()) {
+            ProgressManager.checkCanceled();
+            int component = branch[depth];
+            if (component == startComponent) {
+                int[] path = new int[depth + 1];
+                for (int i = 0; i <= depth; i++) {
+                    path[i] = branch[depth - i]; // from the start component to the target component
+                }
+                paths.add(path);
+                depth--;
+                continue;
+            }
+            int[] callers = condensed[component];
+            while (cursors[depth] < callers.length && !leadsToStart[callers[cursors[depth]]]) {
+                cursors[depth]++;
+            }
+            if (depth < limits.maxDepth() && cursors[depth] < callers.length) {
+                if (depth + 2 > branch.length) {
+                    branch = Arrays.copyOf(branch, branch.length * 2);
+                    cursors = Arrays.copyOf(cursors, branch.length);
+                }
+                int caller = callers[cursors[depth]++];
+                branch[++depth] = caller;
+                cursors[depth] = 0;
+            } else {
+                depth--;
+            }
+        }
+        return new Condensation(components, paths);
+    }
+
+    /**
+     * Finds the shortest call path with a bidirectional breadth-first search: one frontier grows forward from the start method,
+     * the other backward from the target, and the smaller one is expanded level by level until they meet.
+     *
+     * @param graph the call graph
+     * @param start the id of the start method
+     * @param target the id of the target method
+     * @return the ids of the path from the start method to the target, or null if there is no path
+     */
+    static int[] findShortestPath(CallGraph graph, int start, int target) {
+        if (start == target) {
+            return new int[]{start};
+        }
+        Int2IntOpenHashMap forwardParents = new Int2IntOpenHashMap(); // method -> next method towards the start
+        Int2IntOpenHashMap backwardParents = new Int2IntOpenHashMap(); // method -> next method towards the target
+        Int2IntOpenHashMap forwardDepths = new Int2IntOpenHashMap();
+        Int2IntOpenHashMap backwardDepths = new Int2IntOpenHashMap();
+        forwardParents.put(start, NONE);
+        forwardDepths.put(start, 0);
+        backwardParents.put(target, NONE);
+        backwardDepths.put(target, 0);
+        IntArrayList forwardFrontier = IntArrayList.of(start);
+        IntArrayList backwardFrontier = IntArrayList.of(target);
+        int meeting = NONE;
+        int shortest = Integer.MAX_VALUE;
+        while (meeting == NONE && !forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+            boolean forward = forwardFrontier.size() <= backwardFrontier.size();
+            IntArrayList frontier = forward ? forwardFrontier : backwardFrontier;
+            Int2IntOpenHashMap parents = forward ? forwardParents : backwardParents;
+            Int2IntOpenHashMap depths = forward ? forwardDepths : backwardDepths;
+            Int2IntOpenHashMap otherDepths = forward ? backwardDepths : forwardDepths;
+            IntArrayList nextFrontier = new IntArrayList();
+            for (int i = 0; i < frontier.size(); i++) { // the whole level is expanded, so the best meeting point is found
+                ProgressManager.checkCanceled();
+                int method = frontier.getInt(i);
+                int depth = depths.get(method) + 1;
+                int neighbours = forward ? graph.calleeCount(method) : graph.callerCount(method);
+                for (int j = 0; j < neighbours; j++) {
+                    int neighbour = forward ? graph.callee(method, j) : graph.caller(method, j);
+                    if (parents.containsKey(neighbour)) {
+                        continue;
+                    }
+                    parents.put(neighbour, method);
+                    depths.put(neighbour, depth);
+                    nextFrontier.add(neighbour);
+                    if (otherDepths.containsKey(neighbour) && depth + otherDepths.get(neighbour) < shortest) {
+                        shortest = depth + otherDepths.get(neighbour);
+                        meeting = neighbour;
+                    }
+                }
+            }
+            if (forward) {
+                forwardFrontier = nextFrontier;
+            } else {
+                backwardFrontier = nextFrontier;
+            }
+        }
+        if (meeting == NONE) {
+            return null;
+        }
+        IntArrayList path = new IntArrayList();
+        for (int method = meeting; method != NONE; method = forwardParents.get(method)) {
+            path.add(method);
+        }
+        int[] ids = new int[path.size() + backwardDepths.get(meeting)];
+        for (int i = 0; i < path.size(); i++) {
+            ids[i] = path.getInt(path.size() - 1 - i); // start ... meeting
+        }
+        int position = path.size();
+        for (int method = backwardParents.get(meeting); method != NONE; method = backwardParents.get(method)) {
+            ids[position++] = method; // ... target
+        }
+        return ids;
+    }
+
+    /**
+     * Finds up to k shortest call paths from the start method to the target with Yen's algorithm,
+     * using a breadth-first search over callers for every spur path. Paths are returned in increasing length.
+     *
+     * @param graph the call graph
+     * @param start the id of the start method
+     * @param target the id of the target method
+     * @param k the maximum number of paths to find
+     * @return the ids of every path from the start method to the target
+     */
+    static List<int[]> findShortestPaths(CallGraph graph, int start, int target, int k) {
+        int[] first = k > 0 ? findShortestBackwardPath(graph, start, target, new BitSet(), new LongOpenHashSet()) : null;
+        if (first == null) {
+            return List.of();
+        }
+        List<int[]> shortest = new ArrayList<>();
+        shortest.add(first);
+        PriorityQueue<int[]> candidates = new PriorityQueue<>(Comparator.comparingInt(path -> path.length));
+        Set<IntArrayList> seen = new HashSet<>();
+        seen.add(new IntArrayList(first));
+        while (shortest.size() < k) {
+            int[] previous = shortest.get(shortest.size() - 1);
+            for (int i = 0; i < previous.length - 1; i++) {
+                LongOpenHashSet blockedEdges = new LongOpenHashSet(); // edges leaving the spur method on already found paths
+                for (int[] path : shortest) {
+                    if (path.length > i + 1 && Arrays.equals(path, 0, i + 1, previous, 0, i + 1)) {
+                        blockedEdges.add(edge(path[i], path[i + 1]));
+                    }
+                }
+                BitSet blockedMethods = new BitSet(); // keeps the paths simple
+                for (int j = 0; j < i; j++) {
+                    blockedMethods.set(previous[j]);
+                }
+                int[] spurPath = findShortestBackwardPath(graph, previous[i], target, blockedMethods, blockedEdges);
+                if (spurPath != null) {
+                    int[] candidate = new int[i + spurPath.length];
+                    System.arraycopy(previous, 0, candidate, 0, i);
+                    System.arraycopy(spurPath, 0, candidate, i, spurPath.length);
+                    if (seen.add(new IntArrayList(candidate))) {
+                        candidates.add(candidate);
+                    }
+                }
+            }
+            int[] next = candidates.poll();
+            if (next == null) {
+                break;
+            }
+            shortest.add(next);
+        }
+        return shortest;
+    }
+
+    /**
+     * Finds the shortest call path from one method to the target with a breadth-first search over callers of the target.
+     *
+     * @param graph the call graph
+     * @param from the id of the first method of the path
+     * @param target the id of the last method of the path
+     * @param blockedMethods the ids of methods the path must not go through
+     * @param blockedEdges the calls the path must not use, encoded by {@link #edge(int, int)}
+     * @return the ids of the path from the first method to the target, or null if there is no such path
+     */
+    private static int[] findShortestBackwardPath(CallGraph graph, int from, int target, BitSet blockedMethods,
+                                                  LongOpenHashSet blockedEdges) {
+        Int2IntOpenHashMap callees = new Int2IntOpenHashMap(); // caller -> next method towards the target
+        IntArrayList queue = new IntArrayList();
+        callees.put(target, NONE);
+        queue.add(target);
+        for (int head = 0; head < queue.size(); head++) {
+            ProgressManager.checkCanceled();
+            int method = queue.getInt(head);
+            if (method == from) {
+                IntArrayList path = new IntArrayList();
+                for (int current = from; current != NONE; current = callees.get(current)) {
+                    path.add(current);
+                }
+                return path.toIntArray();
+            }
+            for (int i = 0; i < graph.callerCount(method); i++) {
+                int caller = graph.caller(method, i);
+                if (!callees.containsKey(caller) && !blockedMethods.get(caller) && !blockedEdges.contains(edge(caller, method))) {
+                    callees.put(caller, method);
+                    queue.add(caller);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long edge(int caller, int callee) {
+        return (long) caller << 32 | callee & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,35 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.ProjectActivity;
+import kotlin.Unit;
+import kotlin.coroutines.Continuation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds the project call graph in the background once indexing finishes after the project is opened.
+ * Path queries take the callers of every method from this graph, so the first query after opening the project
+ * does not search and resolve call sites.
+ */
+public final class CallGraphPrewarmer implements ProjectActivity {
+    @Override
+    public @Nullable Object execute(@NotNull Project project, @NotNull Continuation<? super Unit> continuation) {
+        prewarm(project);
+        return Unit.INSTANCE; // does not suspend, the graph is built by a non-blocking read action
+    }
+
+    /**
+     * Schedules the update of the project call graph for when the project is smart.
+     *
+     * @param project the opened project
+     */
+    static void prewarm(@NotNull Project project) {
+        DumbService.getInstance(project).runWhenSmart(() -> {
+            if (!project.isDisposed()) {
+                ProjectCallGraph.getInstance(project).scheduleUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary file holding the calls extracted per file, so a restarted IDE only extracts the files changed meanwhile.
+ * Method keys are written once in a table, calls refer to them by index as variable-length ints.
+ * The file is read into memory at once and closed before it is parsed, so no handle keeps it open;
+ * writing replaces it atomically, which Windows refuses for a file still open or mapped.
+ */
+final class CallGraphStorage {
+    private static final Logger LOG = Logger.getInstance(CallGraphStorage.class);
+    private static final int MAGIC = 0x43504731; // "CPG1"
+    private static final int VERSION = 2; // increase when the format, method keys or extracted calls change
+
+    /**
+     * Calls extracted from a single file, with what is needed to check the file did not change since.
+     *
+     * @param url the url of the file
+     * @param timeStamp the time stamp of the file on disk when the calls were extracted
+     * @param length the length of the file on disk when the calls were extracted
+     * @param methods the key indices of the methods declared in the file
+     * @param callees the key indices of the callees of every method, in the order of the methods
+     */
+    record StoredFile(String url, long timeStamp, long length, int[] methods, int[][] callees) {
+    }
+
+    /**
+     * The content of a storage file.
+     *
+     * @param rulesHash the hash of the asynchronous boundary rules the calls were extracted with
+     * @param keys the method keys referred to by index
+     * @param files the calls of every stored file
+     */
+    record Content(int rulesHash, String[] keys, List<StoredFile> files) {
+    }
+
+    private CallGraphStorage() {
+    }
+
+    /**
+     * Writes the calls to a temporary file first, then moves it over the previous one.
+     *
+     * @param path the file to write
+     * @param content the calls to write
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path path, Content content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(content.rulesHash());
+            writeVarInt(out, content.keys().length);
+            for (String key : content.keys()) {
+                writeString(out, key);
+            }
+            writeVarInt(out, content.files().size());
+            for (StoredFile file : content.files()) {
+                writeString(out, file.url());
+                out.writeLong(file.timeStamp());
+                out.writeLong(file.length());
+                writeVarInt(out, file.methods().length);
+                for (int i = 0; i < file.methods().length; i++) {
+                    writeVarInt(out, file.methods()[i]);
+                    writeVarInt(out, file.callees()[i].length);
+                    for (int callee : file.callees()[i]) {
+                        writeVarInt(out, callee);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a storage file. A missing file, a file of another version and a damaged file are all treated as no file.
+     *
+     * @param path the file to read
+     * @return the stored calls, or null if there are none usable
+     */
+    static @Nullable Content read(Path path) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            int rulesHash = buffer.getInt();
+            String[] keys = new String[readCount(buffer)];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = readString(buffer);
+            }
+            int fileCount = readCount(buffer);
+            List<StoredFile> files = new ArrayList<>(fileCount);
+            for (int f = 0; f < fileCount; f++) {
+                String url = readString(buffer);
+                long timeStamp = buffer.getLong();
+                long length = buffer.getLong();
+                int[] methods = new int[readCount(buffer)];
+                int[][] callees = new int[methods.length][];
+                for (int i = 0; i < methods.length; i++) {
+                    methods[i] = readIndex(buffer, keys.length);
+                    callees[i] = new int[readCount(buffer)];
+                    for (int c = 0; c < callees[i].length; c++) {
+                        callees[i][c] = readIndex(buffer, keys.length);
+                    }
+                }
+                files.add(new StoredFile(url, timeStamp, length, methods, callees));
+            }
+            return new Content(rulesHash, keys, files);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IllegalStateException e) {
+            LOG.warn("Ignoring unreadable call graph storage " + path, e);
+            return null;
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length int");
+    }
+
+    /**
+     * Reads a count of items, each taking at least one byte, so a damaged count cannot allocate a huge array.
+     */
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalStateException("Malformed count " + count);
+        }
+        return count;
+    }
+
+    private static int readIndex(ByteBuffer buffer, int keyCount) {
+        int index = readVarInt(buffer);
+        if (index < 0 || index >= keyCount) {
+            throw new IllegalStateException("Malformed key index " + index);
+        }
+        return index;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readCount(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
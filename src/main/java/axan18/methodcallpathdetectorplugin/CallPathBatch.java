@@ -0,0 +1,177 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Answers many start/target questions at once from the project call graph, for checks run in CI such as
+ * "no controller reaches a blocking JDBC call". The graph is brought up to date once and every pair is answered
+ * from the same graph: reachability from its index, the shortest call path by a search over its arrays.
+ * Methods are given by their keys, see {@link MethodKeys}: {@code pkg.Class#method(pkg.Type,int)}, or
+ * {@code pkg.Class#method} for all overloads.
+ */
+final class CallPathBatch {
+    private CallPathBatch() {
+    }
+
+    /**
+     * A question of the batch.
+     *
+     * @param start the signature of the method the call path starts at
+     * @param target the signature of the method the call path ends at
+     */
+    record Pair(@NotNull String start, @NotNull String target) {
+    }
+
+    enum Status {
+        REACHABLE, UNREACHABLE, START_NOT_FOUND, TARGET_NOT_FOUND
+    }
+
+    /**
+     * The answer to a question.
+     *
+     * @param pair the question
+     * @param status whether the target is reachable, or which method was not found
+     * @param path the keys of the shortest call path from start to target, including both; empty if not reachable
+     *             or not requested
+     */
+    record Answer(@NotNull Pair pair, @NotNull Status status, @NotNull List<String> path) {
+    }
+
+    /**
+     * Reads the pairs of a batch, one per line as {@code start -> target}. Blank lines and lines starting with
+     * {@code #} are skipped; whitespace in signatures is ignored.
+     *
+     * @param lines the lines of the batch file
+     * @return the pairs in the order of the lines
+     * @throws IllegalArgumentException if a line is not a pair
+     */
+    static List<Pair> parsePairs(@NotNull List<String> lines) {
+        List<Pair> pairs = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int arrow = line.indexOf("->");
+            String start = arrow > 0 ? normalize(line.substring(0, arrow)) : "";
+            String target = arrow > 0 ? normalize(line.substring(arrow + 2)) : "";
+            if (!start.contains("#") || !target.contains("#")) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " is not a 'pkg.Class#start -> pkg.Class#target' pair: "
+                        + line);
+            }
+            pairs.add(new Pair(start, target));
+        }
+        return pairs;
+    }
+
+    /**
+     * Answers all pairs from a snapshot of the project call graph, see {@link ProjectCallGraph#getUpToDateSnapshot()}.
+     * The snapshot is immutable, so no read action is needed and write actions are not held up by the batch.
+     *
+     * @param snapshot the up-to-date project call graph
+     * @param pairs the questions
+     * @param withPaths whether to find the shortest call path of every reachable pair
+     * @return the answers in the order of the pairs
+     */
+    static List<Answer> answer(@NotNull ProjectCallGraph.Snapshot snapshot, @NotNull List<Pair> pairs, boolean withPaths) {
+        PsiCallGraphBuilder.Result graph = snapshot.graph();
+        String[] keys = graph.keys();
+        Map<String, List<Integer>> bySignature = new HashMap<>(); // every overload under its name, too
+        for (int id = 0; id < keys.length; id++) {
+            String normalized = normalize(keys[id]);
+            bySignature.computeIfAbsent(normalized, k -> new ArrayList<>()).add(id);
+            int parameters = normalized.indexOf('(');
+            if (parameters > 0) {
+                bySignature.computeIfAbsent(normalized.substring(0, parameters), k -> new ArrayList<>()).add(id);
+            }
+        }
+        ReachabilityIndex reachability = snapshot.reachability();
+        List<Answer> answers = new ArrayList<>(pairs.size());
+        for (Pair pair : pairs) {
+            ProgressManager.checkCanceled();
+            List<Integer> starts = bySignature.getOrDefault(pair.start(), List.of());
+            List<Integer> targets = bySignature.getOrDefault(pair.target(), List.of());
+            if (starts.isEmpty()) {
+                answers.add(new Answer(pair, Status.START_NOT_FOUND, List.of()));
+            } else if (targets.isEmpty()) {
+                answers.add(new Answer(pair, Status.TARGET_NOT_FOUND, List.of()));
+            } else {
+                answers.add(answer(pair, starts, targets, graph.graph(), reachability, keys, withPaths));
+            }
+        }
+        return answers;
+    }
+
+    private static Answer answer(Pair pair, List<Integer> starts, List<Integer> targets, CallGraph graph,
+                                 ReachabilityIndex reachability, String[] keys, boolean withPaths) {
+        for (int start : starts) {
+            for (int target : targets) {
+                if (!reachability.canReach(start, target)) {
+                    continue;
+                }
+                List<String> path = new ArrayList<>();
+                int[] ids = withPaths ? CallGraphEngine.findShortestPath(graph, start, target) : null;
+                if (ids != null) {
+                    for (int id : ids) {
+                        path.add(keys[id]);
+                    }
+                }
+                return new Answer(pair, Status.REACHABLE, path);
+            }
+        }
+        return new Answer(pair, Status.UNREACHABLE, List.of());
+    }
+
+    /**
+     * Writes the answers as a JSON array of objects with the start, target, status and path of every pair.
+     *
+     * @param answers the answers to write
+     * @param out the writer
+     * @throws IOException if writing fails
+     */
+    static void writeJson(@NotNull List<Answer> answers, @NotNull Writer out) throws IOException {
+        out.write("[");
+        for (int i = 0; i < answers.size(); i++) {
+            Answer answer = answers.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("  {\"start\": " + Json.quote(answer.pair().start())
+                    + ", \"target\": " + Json.quote(answer.pair().target())
+                    + ", \"status\": " + Json.quote(answer.status().name())
+                    + ", \"path\": [");
+            StringJoiner path = new StringJoiner(", ");
+            answer.path().forEach(key -> path.add(Json.quote(key)));
+            out.write(path + "]}");
+        }
+        out.write("\n]\n");
+    }
+
+    /**
+     * Writes the answers as CSV with a header row; the path is a single column of keys joined with {@code " -> "}.
+     *
+     * @param answers the answers to write
+     * @param out the writer
+     * @throws IOException if writing fails
+     */
+    static void writeCsv(@NotNull List<Answer> answers, @NotNull Writer out) throws IOException {
+        out.write("start,target,status,path\n");
+        for (Answer answer : answers) {
+            out.write(csvField(answer.pair().start()) + "," + csvField(answer.pair().target()) + ","
+                    + answer.status().name() + "," + csvField(String.join(" -> ", answer.path())) + "\n");
+        }
+    }
+
+    private static String normalize(String signature) {
+        return signature.replaceAll("\\s+", "");
+    }
+
+    private static String csvField(String value) {
+        return value.contains(",") || value.contains("\"") || value.contains("\n")
+                ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+}
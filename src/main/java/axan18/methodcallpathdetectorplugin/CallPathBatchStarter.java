@@ -0,0 +1,120 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.application.ex.ApplicationEx;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Headless entry point answering a file of start/target pairs, see {@link CallPathBatch}:
+ * <pre>
+ * idea callPathBatch &lt;project dir&gt; &lt;pairs file&gt; &lt;output file&gt; [--format=json|csv] [--no-paths] [--fail-on-reachable]
+ * </pre>
+ * The format defaults to CSV for a {@code .csv} output file and JSON otherwise. With {@code --fail-on-reachable}
+ * the exit code is 1 when any pair is reachable, so a CI step can assert that some calls never happen.
+ */
+public final class CallPathBatchStarter implements ApplicationStarter {
+    private static final Logger LOG = Logger.getInstance(CallPathBatchStarter.class);
+    private static final String USAGE = "Usage: callPathBatch <project dir> <pairs file> <output file> "
+            + "[--format=json|csv] [--no-paths] [--fail-on-reachable]";
+    private static final int EXIT_REACHABLE = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final int EXIT_ERROR = 3;
+
+    /**
+     * The parsed command line.
+     */
+    private record Options(Path project, Path pairs, Path output, boolean csv, boolean withPaths, boolean failOnReachable) {
+        static Options parse(List<String> args) {
+            List<String> positional = args.stream().filter(arg -> !arg.startsWith("--")).toList();
+            if (positional.size() != 3) {
+                throw new IllegalArgumentException("Expected a project, a pairs file and an output file");
+            }
+            Path output = Path.of(positional.get(2));
+            boolean csv = output.getFileName().toString().endsWith(".csv");
+            boolean withPaths = true;
+            boolean failOnReachable = false;
+            for (String arg : args) {
+                switch (arg) {
+                    case "--format=json" -> csv = false;
+                    case "--format=csv" -> csv = true;
+                    case "--no-paths" -> withPaths = false;
+                    case "--fail-on-reachable" -> failOnReachable = true;
+                    default -> {
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + arg);
+                        }
+                    }
+                }
+            }
+            return new Options(Path.of(positional.get(0)), Path.of(positional.get(1)), output, csv, withPaths,
+                    failOnReachable);
+        }
+    }
+
+    /**
+     * The batch waits for indexing and builds the graph synchronously, neither of which may happen on the event dispatch thread.
+     */
+    @Override
+    public int getRequiredModality() {
+        return NOT_IN_EDT;
+    }
+
+    @Override
+    public void main(@NotNull List<String> args) {
+        int exitCode;
+        try {
+            exitCode = run(Options.parse(args.subList(1, args.size()))); // the first argument is the command name
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            exitCode = EXIT_USAGE;
+        } catch (Exception e) {
+            LOG.error("Call path batch failed", e);
+            System.err.println("Call path batch failed: " + e);
+            exitCode = EXIT_ERROR;
+        }
+        ApplicationManagerEx.getApplicationEx().exit(ApplicationEx.FORCE_EXIT | ApplicationEx.EXIT_CONFIRMED, exitCode);
+    }
+
+    private static int run(Options options) throws IOException {
+        List<CallPathBatch.Pair> pairs = CallPathBatch.parsePairs(Files.readAllLines(options.pairs()));
+        Project project = ProjectUtil.openOrImport(options.project(), null, false);
+        if (project == null) {
+            throw new IllegalArgumentException("Cannot open the project " + options.project());
+        }
+        try {
+            ProjectCallGraph.Snapshot snapshot = ReadAction.nonBlocking( // gives way to write actions while the graph is built
+                    () -> ProjectCallGraph.getInstance(project).getUpToDateSnapshot())
+                    .inSmartMode(project)
+                    .executeSynchronously();
+            List<CallPathBatch.Answer> answers = CallPathBatch.answer(snapshot, pairs, options.withPaths());
+            try (Writer out = Files.newBufferedWriter(options.output(), StandardCharsets.UTF_8)) {
+                if (options.csv()) {
+                    CallPathBatch.writeCsv(answers, out);
+                } else {
+                    CallPathBatch.writeJson(answers, out);
+                }
+            }
+            long reachable = answers.stream().filter(answer -> answer.status() == CallPathBatch.Status.REACHABLE).count();
+            System.out.println(answers.size() + " pairs answered, " + reachable + " reachable, written to "
+                    + options.output());
+            return options.failOnReachable() && reachable > 0 ? EXIT_REACHABLE : 0;
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() -> ProjectManager.getInstance().closeAndDispose(project));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.scope.packageSet.NamedScope;
+import com.intellij.psi.search.scope.packageSet.NamedScopesHolder;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Settings page of call path searches under Settings | Tools.
+ */
+public final class CallPathConfigurable implements Configurable {
+    private final Project project;
+    private JComboBox<CallPathSettings.CallerScope> callerScope;
+    private JComboBox<String> customScope;
+    private JCheckBox useCompilerReferences;
+    private JTextArea asyncBoundaryRules;
+    private JCheckBox dumpQueryStats;
+    private JSpinner callerCacheBudget;
+
+    public CallPathConfigurable(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Call Path Detector";
+    }
+
+    @Override
+    public JComponent createComponent() {
+        callerScope = new JComboBox<>(CallPathSettings.CallerScope.values());
+        customScope = new JComboBox<>(namedScopes().toArray(new String[0]));
+        callerScope.addActionListener(
+                e -> customScope.setEnabled(callerScope.getSelectedItem() == CallPathSettings.CallerScope.CUSTOM));
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.anchor = GridBagConstraints.WEST;
+        constraints.insets = new Insets(2, 0, 2, 8);
+        addRow(panel, constraints, 0, "Search callers in:", callerScope);
+        addRow(panel, constraints, 1, "Custom scope:", customScope);
+        useCompilerReferences = new JCheckBox("Use the compiler reference index for compiled files");
+        constraints.gridy = 2;
+        constraints.gridx = 0;
+        constraints.gridwidth = 2;
+        panel.add(useCompilerReferences, constraints);
+        asyncBoundaryRules = new JTextArea(8, 60);
+        asyncBoundaryRules.setToolTipText("One rule per line: pkg.Class for constructors, pkg.Class#method or *#method "
+                + "for methods; a method name like *Async matches every name ending with Async");
+        constraints.gridy = 3;
+        panel.add(new JLabel("Calls starting asynchronous code, not followed by call paths:"), constraints);
+        constraints.gridy = 4;
+        constraints.fill = GridBagConstraints.BOTH;
+        panel.add(new JScrollPane(asyncBoundaryRules), constraints);
+        constraints.fill = GridBagConstraints.NONE;
+        dumpQueryStats = new JCheckBox("Append query statistics as JSON to " + QueryDiagnostics.DUMP_FILE_NAME
+                + " in the IDE log directory");
+        constraints.gridy = 5;
+        panel.add(dumpQueryStats, constraints);
+        callerCacheBudget = new JSpinner(new SpinnerNumberModel(CallPathSettings.DEFAULT_CALLER_CACHE_BUDGET_MB, 1, 4096, 16));
+        callerCacheBudget.setToolTipText("Estimated memory of the resolved callers held strongly; "
+                + "less recently used callers are kept only until the garbage collector needs the memory");
+        constraints.gridwidth = 1;
+        addRow(panel, constraints, 6, "Caller cache budget (MB):", callerCacheBudget);
+        constraints.gridy = 7;
+        constraints.gridx = 0;
+        constraints.gridwidth = 2;
+        constraints.weighty = 1; // keeps the rows at the top
+        panel.add(new JPanel(), constraints);
+        return panel; // filled by reset()
+    }
+
+    private static void addRow(JPanel panel, GridBagConstraints constraints, int row, String label, JComponent component) {
+        constraints.gridy = row;
+        constraints.gridx = 0;
+        constraints.weightx = 0;
+        panel.add(new JLabel(label), constraints);
+        constraints.gridx = 1;
+        constraints.weightx = 1;
+        panel.add(component, constraints);
+    }
+
+    /**
+     * @return the ids of the named scopes of the project, such as the shared and local scopes
+     */
+    private Set<String> namedScopes() {
+        Set<String> ids = new TreeSet<>();
+        for (NamedScopesHolder holder : NamedScopesHolder.getAllNamedScopeHolders(project)) {
+            for (NamedScope scope : holder.getScopes()) {
+                ids.add(scope.getScopeId());
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean isModified() {
+        CallPathSettings settings = CallPathSettings.getInstance(project);
+        return callerScope.getSelectedItem() != settings.getCallerScope()
+                || !Objects.equals(selectedCustomScope(), settings.getCustomScope())
+                || useCompilerReferences.isSelected() != settings.isUseCompilerReferences()
+                || !enteredRules().equals(settings.getAsyncBoundaryRules())
+                || dumpQueryStats.isSelected() != settings.isDumpQueryStats()
+                || (Integer) callerCacheBudget.getValue() != settings.getCallerCacheBudgetMb();
+    }
+
+    @Override
+    public void apply() {
+        CallPathSettings settings = CallPathSettings.getInstance(project);
+        settings.setCallerScope((CallPathSettings.CallerScope) Objects.requireNonNull(callerScope.getSelectedItem()));
+        settings.setCustomScope(selectedCustomScope());
+        settings.setUseCompilerReferences(useCompilerReferences.isSelected());
+        settings.setAsyncBoundaryRules(enteredRules());
+        settings.setDumpQueryStats(dumpQueryStats.isSelected());
+        settings.setCallerCacheBudgetMb((Integer) callerCacheBudget.getValue());
+    }
+
+    @Override
+    public void reset() {
+        CallPathSettings settings = CallPathSettings.getInstance(project);
+        callerScope.setSelectedItem(settings.getCallerScope());
+        customScope.setSelectedItem(settings.getCustomScope());
+        customScope.setEnabled(settings.getCallerScope() == CallPathSettings.CallerScope.CUSTOM);
+        useCompilerReferences.setSelected(settings.isUseCompilerReferences());
+        asyncBoundaryRules.setText(String.join("\n", settings.getAsyncBoundaryRules()));
+        dumpQueryStats.setSelected(settings.isDumpQueryStats());
+        callerCacheBudget.setValue(settings.getCallerCacheBudgetMb());
+    }
+
+    @Override
+    public void disposeUIResources() {
+        callerScope = null;
+        customScope = null;
+        useCompilerReferences = null;
+        asyncBoundaryRules = null;
+        dumpQueryStats = null;
+        callerCacheBudget = null;
+    }
+
+    private List<String> enteredRules() {
+        List<String> rules = new ArrayList<>();
+        for (String line : asyncBoundaryRules.getText().split("\n")) {
+            if (!line.isBlank()) {
+                rules.add(line.trim());
+            }
+        }
+        return rules;
+    }
+
+    private String selectedCustomScope() {
+        Object selected = customScope.getSelectedItem();
+        return selected != null ? selected.toString() : "";
+    }
+}
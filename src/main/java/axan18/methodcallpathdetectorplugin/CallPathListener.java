@@ -0,0 +1,41 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Receives call paths as soon as they are found. Methods are called from background threads.
+ */
+public interface CallPathListener {
+    /**
+     * Called when the search of a target starts. A search restarted after a write action starts again,
+     * so the paths published for the target before are obsolete.
+     *
+     * @param target the index of the target in the searched list
+     * @param label the presentable description of the target method
+     */
+    default void targetStarted(int target, @NotNull String label) {
+    }
+
+    /**
+     * Called for every call path found.
+     *
+     * @param target the index of the target in the searched list
+     * @param path the call path, without the target method
+     */
+    void pathFound(int target, @NotNull List<String> path);
+
+    /**
+     * Called for every call path found, with its methods. Called in the read action of the search, so the methods
+     * are valid during the call only; keep smart pointers to them, not the methods.
+     *
+     * @param target the index of the target in the searched list
+     * @param path the call path, without the target method
+     * @param methods the methods of the call path from the start method to the target, both included
+     */
+    default void pathFound(int target, @NotNull List<String> path, @NotNull List<PsiMethod> methods) {
+        pathFound(target, path);
+    }
+}
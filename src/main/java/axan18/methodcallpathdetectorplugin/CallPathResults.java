@@ -0,0 +1,193 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Call paths of one search, filled by the search as paths are found and read by the results tool window.
+ * A path is kept as the int ids of its methods; every method is stored once, with a smart pointer to navigate to it,
+ * so tens of thousands of paths sharing their methods stay small. Thread-safe.
+ */
+final class CallPathResults {
+    /**
+     * The state of the search filling the results.
+     */
+    enum State {
+        RUNNING, FINISHED, CANCELLED
+    }
+
+    private final Project project;
+    private final String title;
+    private final int maxPaths;
+    private final Object2IntOpenHashMap<PsiMethod> methodIds = new Object2IntOpenHashMap<>(); // while the search runs
+    private final List<SmartPsiElementPointer<PsiMethod>> methods = new ArrayList<>(); // by id
+    private final List<String> methodNames = new ArrayList<>(); // by id
+    private final List<Target> targets = new ArrayList<>(); // by target index, null until started
+    private int startedTargets; // counts restarts too, giving every started target a new generation
+    private volatile State state = State.RUNNING;
+
+    /**
+     * Paths to one target method.
+     */
+    private static final class Target {
+        private final String label;
+        private final int generation;
+        private final List<int[]> paths = new ArrayList<>();
+
+        Target(String label, int generation) {
+            this.label = label;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * @param project the project searched
+     * @param title the title of the results tab
+     * @param maxPaths the number of paths after which the search of a target stops
+     */
+    CallPathResults(@NotNull Project project, @NotNull String title, int maxPaths) {
+        this.project = project;
+        this.title = title;
+        this.maxPaths = maxPaths;
+        methodIds.defaultReturnValue(-1);
+    }
+
+    @NotNull String getTitle() {
+        return title;
+    }
+
+    int getMaxPaths() {
+        return maxPaths;
+    }
+
+    /**
+     * Starts the paths of a target, dropping the paths found before for it by a search that was restarted since.
+     *
+     * @param target the index of the target
+     * @param label the description of the target method
+     */
+    synchronized void targetStarted(int target, @NotNull String label) {
+        while (targets.size() <= target) {
+            targets.add(null);
+        }
+        targets.set(target, new Target(label, ++startedTargets));
+    }
+
+    /**
+     * Adds a path. Must be called in a read action, with the methods valid.
+     *
+     * @param target the index of the target
+     * @param path the methods of the path from the start method to the target
+     */
+    synchronized void addPath(int target, @NotNull List<PsiMethod> path) {
+        int[] ids = new int[path.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idOf(path.get(i));
+        }
+        if (target >= targets.size() || targets.get(target) == null) {
+            targetStarted(target, methodNames.get(ids[ids.length - 1]));
+        }
+        targets.get(target).paths.add(ids);
+    }
+
+    private int idOf(PsiMethod method) {
+        int id = methodIds.getInt(method);
+        if (id < 0) {
+            id = methods.size();
+            methods.add(SmartPointerManager.getInstance(project).createSmartPsiElementPointer(method));
+            methodNames.add(CallPathSearchService.describe(method));
+            methodIds.put(method, id);
+        }
+        return id;
+    }
+
+    /**
+     * Sets the state of the search. Once it ended, the methods are only kept through their smart pointers.
+     *
+     * @param state the new state
+     */
+    synchronized void setState(@NotNull State state) {
+        this.state = state;
+        if (state != State.RUNNING) {
+            methodIds.clear();
+            methodIds.trim();
+        }
+    }
+
+    @NotNull State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of targets, including the ones whose search has not started yet
+     */
+    synchronized int getTargetCount() {
+        return targets.size();
+    }
+
+    synchronized @NotNull String getTargetLabel(int target) {
+        Target started = targets.get(target);
+        return started != null ? started.label : "";
+    }
+
+    /**
+     * @param target the index of the target
+     * @return a number changing whenever the search of the target is restarted, 0 before it started
+     */
+    synchronized int getGeneration(int target) {
+        Target started = targets.get(target);
+        return started != null ? started.generation : 0;
+    }
+
+    synchronized int getPathCount(int target) {
+        Target started = targets.get(target);
+        return started != null ? started.paths.size() : 0;
+    }
+
+    synchronized int getTotalPathCount() {
+        int count = 0;
+        for (int target = 0; target < targets.size(); target++) {
+            count += getPathCount(target);
+        }
+        return count;
+    }
+
+    /**
+     * @param target the index of the target
+     * @param path the index of the path among the paths of the target
+     * @return the method ids of the path from the start method to the target, not to be modified,
+     *         or null if the search of the target was restarted and did not find the path again yet
+     */
+    synchronized int @Nullable [] getPath(int target, int path) {
+        Target started = targets.get(target);
+        return started != null && path < started.paths.size() ? started.paths.get(path) : null;
+    }
+
+    /**
+     * @param method the id of a method
+     * @return the description of the method with its class and parameter types
+     */
+    synchronized @NotNull String getMethodName(int method) {
+        return methodNames.get(method);
+    }
+
+    /**
+     * @param method the id of a method
+     * @return the method, or null if it was removed from the code since. Must be called in a read action
+     */
+    @Nullable PsiMethod getMethod(int method) {
+        SmartPsiElementPointer<PsiMethod> pointer;
+        synchronized (this) {
+            pointer = methods.get(method);
+        }
+        return pointer.getElement();
+    }
+}
@@ -0,0 +1,344 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.SimpleColoredComponent;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tree of the call paths of one search: targets, their paths and the calls of every path. The tree model creates
+ * nodes only when the tree asks for them, so only expanded and visible rows cost anything, and it is refreshed
+ * from {@link CallPathResults} a few times per second while the search runs. Double-click or Enter opens the call.
+ */
+final class CallPathResultsPanel extends JPanel implements Disposable {
+    private static final int REFRESH_MS = 250;
+
+    private final Project project;
+    private final CallPathResults results;
+    private final ResultsTreeModel model;
+    private final JBLabel status = new JBLabel();
+    private final Timer refreshTimer;
+
+    CallPathResultsPanel(@NotNull Project project, @NotNull CallPathResults results) {
+        super(new BorderLayout());
+        this.project = project;
+        this.results = results;
+        this.model = new ResultsTreeModel(results);
+        Tree tree = new Tree(model);
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+        tree.setRowHeight(tree.getFontMetrics(tree.getFont()).getHeight() + 4);
+        tree.setLargeModel(true); // rows of a fixed height are laid out only when visible
+        tree.setCellRenderer(new ColoredTreeCellRenderer() {
+            @Override
+            public void customizeCellRenderer(@NotNull JTree tree, Object value, boolean selected, boolean expanded,
+                                              boolean leaf, int row, boolean hasFocus) {
+                model.render(value, this);
+            }
+        });
+        tree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                TreePath path = tree.getPathForLocation(e.getX(), e.getY());
+                if (e.getClickCount() == 2 && path != null) {
+                    navigate(path.getLastPathComponent());
+                }
+            }
+        });
+        tree.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "navigateToCall");
+        tree.getActionMap().put("navigateToCall", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                TreePath path = tree.getSelectionPath();
+                if (path != null) {
+                    navigate(path.getLastPathComponent());
+                }
+            }
+        });
+        status.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        add(status, BorderLayout.NORTH);
+        add(new JBScrollPane(tree), BorderLayout.CENTER);
+        refreshTimer = new Timer(REFRESH_MS, e -> refresh());
+        refreshTimer.start();
+        refresh();
+    }
+
+    private void refresh() {
+        CallPathResults.State state = results.getState(); // read first, so the last refresh sees every path
+        model.refresh();
+        int found = results.getTotalPathCount();
+        status.setText(switch (state) {
+            case RUNNING -> "Searching, " + found + " call paths found so far";
+            case FINISHED -> found == 0 ? "No call path found" : found + " call paths found";
+            case CANCELLED -> "Search cancelled, showing the " + found + " call paths found so far";
+        });
+        if (state != CallPathResults.State.RUNNING) {
+            refreshTimer.stop();
+        }
+    }
+
+    /**
+     * Opens the call of a call node, the first call of a path node or the method of a target node.
+     * The call is looked up in a background read action, the editor is opened afterwards unless the panel was closed.
+     *
+     * @param node the node to navigate from
+     */
+    private void navigate(Object node) {
+        int[] path;
+        int step;
+        if (node instanceof ResultsTreeModel.CallNode call) {
+            path = results.getPath(call.target(), call.path());
+            step = call.step();
+        } else if (node instanceof ResultsTreeModel.PathNode pathNode) {
+            path = results.getPath(pathNode.target(), pathNode.path());
+            step = 0;
+        } else if (node instanceof ResultsTreeModel.TargetNode target && model.getChildCount(target) > 0) {
+            path = results.getPath(target.target(), 0);
+            step = path != null ? path.length - 1 : 0;
+        } else {
+            return;
+        }
+        if (path == null) {
+            return;
+        }
+        ReadAction.nonBlocking(() -> findNavigatable(path, step))
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.defaultModalityState(), navigatable -> {
+                    if (navigatable != null && navigatable.canNavigate()) {
+                        navigatable.navigate(true);
+                    }
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * @param path the method ids of a call path
+     * @param step the index of the calling method in the path; the last index stands for the target method itself
+     * @return the location of the call, of the calling method if the call is gone, or null if the method is gone
+     */
+    private @Nullable Navigatable findNavigatable(int[] path, int step) {
+        PsiMethod caller = results.getMethod(path[step]);
+        if (caller == null) {
+            return null;
+        }
+        PsiMethod callee = step + 1 < path.length ? results.getMethod(path[step + 1]) : null;
+        PsiElement call = callee != null
+                ? CalleeResolver.findCall(caller, callee, element -> PathFinder.isDirectCall(caller, element)) : null;
+        PsiElement element = call != null ? call : caller;
+        PsiFile file = element.getContainingFile();
+        VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+        return virtualFile != null ? new OpenFileDescriptor(project, virtualFile, element.getTextOffset()) : null;
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    /**
+     * Tree model over {@link CallPathResults}. Nodes are small value objects created on request, identified by
+     * the indices of their target, path and call. The model shows only the paths announced to the tree by
+     * {@link #refresh()}, so the tree never sees a path it was not told about.
+     */
+    private static final class ResultsTreeModel implements TreeModel {
+        private static final Object ROOT = new Object();
+
+        record TargetNode(int target) {
+        }
+
+        record PathNode(int target, int path) {
+        }
+
+        /**
+         * The call from the method at the step of a path to the next method of the path.
+         */
+        record CallNode(int target, int path, int step) {
+        }
+
+        private final CallPathResults results;
+        private final List<TreeModelListener> listeners = new ArrayList<>();
+        private int[] shownPaths = new int[0]; // by target
+        private int[] shownGenerations = new int[0];
+
+        ResultsTreeModel(CallPathResults results) {
+            this.results = results;
+        }
+
+        /**
+         * Announces the targets and paths found since the last refresh. Must be called on the event dispatch thread.
+         */
+        void refresh() {
+            int targetCount = results.getTargetCount();
+            if (targetCount > shownPaths.length) {
+                int shownTargets = shownPaths.length;
+                shownPaths = Arrays.copyOf(shownPaths, targetCount);
+                shownGenerations = Arrays.copyOf(shownGenerations, targetCount);
+                int[] indices = new int[targetCount - shownTargets];
+                Object[] children = new Object[indices.length];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = shownTargets + i;
+                    children[i] = new TargetNode(indices[i]);
+                }
+                fire(new TreeModelEvent(this, new Object[]{ROOT}, indices, children), true);
+            }
+            for (int target = 0; target < targetCount; target++) {
+                int generation = results.getGeneration(target);
+                int count = results.getPathCount(target);
+                TreePath targetPath = new TreePath(new Object[]{ROOT, new TargetNode(target)});
+                if (generation != shownGenerations[target]) { // restarted, the paths shown so far are obsolete
+                    shownGenerations[target] = generation;
+                    shownPaths[target] = count;
+                    for (TreeModelListener listener : listeners) {
+                        listener.treeStructureChanged(new TreeModelEvent(this, targetPath));
+                    }
+                } else if (count > shownPaths[target]) {
+                    int[] indices = new int[count - shownPaths[target]];
+                    Object[] children = new Object[indices.length];
+                    for (int i = 0; i < indices.length; i++) {
+                        indices[i] = shownPaths[target] + i;
+                        children[i] = new PathNode(target, indices[i]);
+                    }
+                    shownPaths[target] = count;
+                    fire(new TreeModelEvent(this, targetPath, indices, children), true);
+                    fire(new TreeModelEvent(this, new Object[]{ROOT}, new int[]{target},
+                            new Object[]{new TargetNode(target)}), false); // the count in its label changed
+                }
+            }
+        }
+
+        private void fire(TreeModelEvent event, boolean inserted) {
+            for (TreeModelListener listener : listeners) {
+                if (inserted) {
+                    listener.treeNodesInserted(event);
+                } else {
+                    listener.treeNodesChanged(event);
+                }
+            }
+        }
+
+        /**
+         * Appends the label of a node to a cell: the path count of a target and the arrows and verbs between
+         * method names are greyed, so the methods stand out.
+         *
+         * @param node the node to render
+         * @param cell the cell to append the label to
+         */
+        void render(Object node, SimpleColoredComponent cell) {
+            if (node instanceof TargetNode target) {
+                int count = shownPaths[target.target()];
+                cell.append(results.getTargetLabel(target.target()), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+                cell.append("  (" + count + " call paths" + (count >= results.getMaxPaths()
+                        ? ", showing the first " + count + ")" : ")"), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (node instanceof PathNode pathNode) {
+                int[] path = results.getPath(pathNode.target(), pathNode.path());
+                for (int i = 0; path != null && i < path.length; i++) {
+                    if (i > 0) {
+                        cell.append(" -> ", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                    }
+                    cell.append(results.getMethodName(path[i]), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+                }
+            } else if (node instanceof CallNode call) {
+                int[] path = results.getPath(call.target(), call.path());
+                if (path != null) {
+                    cell.append(results.getMethodName(path[call.step()]), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+                    cell.append(" calls ", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                    cell.append(results.getMethodName(path[call.step() + 1]), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+                }
+            }
+        }
+
+        @Override
+        public Object getRoot() {
+            return ROOT;
+        }
+
+        @Override
+        public Object getChild(Object parent, int index) {
+            if (parent == ROOT) {
+                return new TargetNode(index);
+            }
+            if (parent instanceof TargetNode target) {
+                return new PathNode(target.target(), index);
+            }
+            PathNode path = (PathNode) parent;
+            return new CallNode(path.target(), path.path(), index);
+        }
+
+        @Override
+        public int getChildCount(Object parent) {
+            if (parent == ROOT) {
+                return shownPaths.length;
+            }
+            if (parent instanceof TargetNode target) {
+                return shownPaths[target.target()];
+            }
+            if (parent instanceof PathNode pathNode) {
+                int[] path = results.getPath(pathNode.target(), pathNode.path());
+                return path != null ? path.length - 1 : 0;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean isLeaf(Object node) {
+            return node instanceof CallNode;
+        }
+
+        @Override
+        public void valueForPathChanged(TreePath path, Object newValue) {
+        }
+
+        @Override
+        public int getIndexOfChild(Object parent, Object child) {
+            if (child instanceof TargetNode target && parent == ROOT) {
+                return target.target();
+            }
+            if (child instanceof PathNode path && parent instanceof TargetNode target && path.target() == target.target()) {
+                return path.path();
+            }
+            if (child instanceof CallNode call && parent instanceof PathNode path
+                    && call.target() == path.target() && call.path() == path.path()) {
+                return call.step();
+            }
+            return -1;
+        }
+
+        @Override
+        public void addTreeModelListener(TreeModelListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeTreeModelListener(TreeModelListener listener) {
+            listeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tool window with one tab per call path search, see {@link CallPathResultsPanel}.
+ */
+public final class CallPathResultsToolWindowFactory implements ToolWindowFactory, DumbAware {
+    static final String ID = "Call Paths";
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        // tabs are added by the searches
+    }
+
+    /**
+     * Opens a tab for the results of a search and shows the tool window. Must be called on the event dispatch thread.
+     *
+     * @param project the project searched
+     * @param results the results, still filled by the search
+     */
+    static void show(@NotNull Project project, @NotNull CallPathResults results) {
+        if (project.isDisposed()) {
+            return;
+        }
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(ID);
+        if (toolWindow == null) {
+            return;
+        }
+        CallPathResultsPanel panel = new CallPathResultsPanel(project, results);
+        Content content = ContentFactory.getInstance().createContent(panel, results.getTitle(), false);
+        content.setDisposer(panel);
+        toolWindow.getContentManager().addContent(content);
+        toolWindow.getContentManager().setSelectedContent(content);
+        toolWindow.activate(null);
+    }
+}
@@ -0,0 +1,207 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.CancellablePromise;
+import org.jetbrains.concurrency.Promise;
+import org.jetbrains.concurrency.Promises;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs call path searches for several targets on a bounded pool.
+ * Every step runs in a non-blocking read action, which is restarted instead of blocking a write action.
+ */
+@Service(Service.Level.PROJECT)
+public final class CallPathSearchService implements Disposable {
+    private static final int MAX_PREFETCHED = 2048; // methods whose callers are resolved ahead of the traversal
+
+    private final Project project;
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "Call Path Search", Runtime.getRuntime().availableProcessors());
+    private final AtomicReference<Search> running = new AtomicReference<>();
+
+    /**
+     * A search started by {@link #searchAll}. It is cancelled on its own, so cancelling a search that was already
+     * replaced by a newer one leaves the newer one running.
+     */
+    public final class Search {
+        private final List<CancellablePromise<?>> promises = new ArrayList<>(); // guarded by this
+        private boolean cancelled; // guarded by this
+        private Promise<Void> promise;
+
+        /**
+         * @return the promise completed when the search finished
+         */
+        public @NotNull Promise<Void> getPromise() {
+            return promise;
+        }
+
+        /**
+         * Cancels the steps of this search, including the ones it has not submitted yet.
+         */
+        public void cancel() {
+            List<CancellablePromise<?>> submitted;
+            synchronized (this) {
+                cancelled = true;
+                submitted = new ArrayList<>(promises);
+            }
+            for (CancellablePromise<?> step : submitted) {
+                step.cancel();
+            }
+            running.compareAndSet(this, null);
+        }
+
+        private <T> CancellablePromise<T> add(CancellablePromise<T> step) {
+            boolean cancelNow;
+            synchronized (this) {
+                promises.add(step);
+                cancelNow = cancelled;
+            }
+            if (cancelNow) {
+                step.cancel();
+            }
+            return step;
+        }
+    }
+
+    public CallPathSearchService(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static CallPathSearchService getInstance(@NotNull Project project) {
+        return project.getService(CallPathSearchService.class);
+    }
+
+    /**
+     * Searches call paths to all specified targets.
+     * Resolving callers is what costs time, so the caller graph is first expanded backwards from the targets
+     * level by level, the callers of every method of a level resolved concurrently on the pool, up to the depth limit
+     * and {@value #MAX_PREFETCHED} methods. All targets are then walked in a single traversal over the resolved callers;
+     * the walk itself is sequential, as it only reads cached callers, and resolves whatever was left out.
+     * Paths are published to the listener as soon as they are found and are not kept here, so the listener decides
+     * what to retain. A new search cancels the one still running.
+     *
+     * @param pathFinder the path finder with the start method set
+     * @param targets the methods to find call paths to
+     * @param limits the limits applied to the search of every target
+     * @param indicator the indicator cancelling the search
+     * @param listener the listener receiving paths as they are found
+     * @return the started search, to wait for or cancel
+     */
+    public @NotNull Search searchAll(@NotNull PathFinder pathFinder, @NotNull List<PsiMethod> targets,
+                                     @NotNull SearchLimits limits, @NotNull ProgressIndicator indicator,
+                                     @NotNull CallPathListener listener) {
+        Search search = new Search();
+        Search previous = running.getAndSet(search);
+        if (previous != null) {
+            previous.cancel();
+        }
+        Set<PsiMethod> prefetched = new HashSet<>(targets);
+        Promise<?> prefetch = prefetchLevel(search, pathFinder, targets, prefetched, 0, limits.maxDepth(), indicator);
+        search.promise = prefetch.thenAsync(ignored -> {
+            CancellablePromise<Void> traversal = ReadAction.nonBlocking(() -> {
+                        for (int i = 0; i < targets.size(); i++) { // a restarted traversal starts every target again
+                            listener.targetStarted(i, describe(targets.get(i)));
+                        }
+                        pathFinder.processCallPathMethods(targets, limits, (target, methods) -> {
+                            listener.pathFound(target, PathFinder.pathNames(methods), methods);
+                            return true;
+                        });
+                        return (Void) null;
+                    })
+                    .inSmartMode(project)
+                    .expireWith(this)
+                    .wrapProgress(indicator)
+                    .submit(executor);
+            return search.add(traversal);
+        });
+        return search;
+    }
+
+    /**
+     * Resolves the callers of every method of a level of the backward search concurrently, then continues with the
+     * callers not seen before. Methods are only handed between read actions to be resolved again; one invalidated
+     * by a write action in between is skipped and left to the traversal.
+     *
+     * @param search the search the steps belong to
+     * @param pathFinder the path finder resolving and caching callers
+     * @param level the methods whose callers to resolve
+     * @param prefetched the methods already resolved or scheduled, used only by the thread completing a level
+     * @param depth the depth of the level, the targets being at depth 0
+     * @param maxDepth the depth from which the traversal does not expand callers
+     * @param indicator the indicator cancelling the search
+     * @return the promise completed when the callers of this level and all following ones are resolved
+     */
+    private Promise<?> prefetchLevel(Search search, PathFinder pathFinder, List<PsiMethod> level, Set<PsiMethod> prefetched,
+                                     int depth, int maxDepth, ProgressIndicator indicator) {
+        if (level.isEmpty() || depth >= maxDepth) {
+            return Promises.resolvedPromise();
+        }
+        List<Promise<List<PsiMethod>>> callers = new ArrayList<>(level.size());
+        for (PsiMethod method : level) {
+            callers.add(search.add(ReadAction.nonBlocking(
+                            () -> method.isValid() ? pathFinder.prefetchCallers(method) : List.<PsiMethod>of())
+                    .inSmartMode(project)
+                    .expireWith(this)
+                    .wrapProgress(indicator)
+                    .submit(executor)));
+        }
+        return Promises.collectResults(callers).thenAsync(resolved -> {
+            List<PsiMethod> next = new ArrayList<>();
+            for (List<PsiMethod> methodCallers : resolved) {
+                for (PsiMethod caller : methodCallers) {
+                    if (prefetched.size() < MAX_PREFETCHED && prefetched.add(caller)) {
+                        next.add(caller);
+                    }
+                }
+            }
+            return prefetchLevel(search, pathFinder, next, prefetched, depth + 1, maxDepth, indicator);
+        });
+    }
+
+    /**
+     * Describes the specified method with its class and parameter types, telling overloads apart.
+     *
+     * @param method the method to describe
+     * @return the description of the method
+     */
+    static String describe(@NotNull PsiMethod method) {
+        StringJoiner parameters = new StringJoiner(", ", "(", ")");
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            parameters.add(parameter.getType().getPresentableText());
+        }
+        PsiClass containingClass = method.getContainingClass();
+        String className = containingClass != null && containingClass.getName() != null ? containingClass.getName() + "." : "";
+        return className + method.getName() + parameters;
+    }
+
+    /**
+     * Cancels the running search, if any.
+     */
+    public void cancel() {
+        Search search = running.get();
+        if (search != null) {
+            search.cancel();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        cancel();
+    }
+}
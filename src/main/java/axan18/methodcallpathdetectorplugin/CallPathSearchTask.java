@@ -0,0 +1,131 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.PsiShortNamesCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.Promise;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cancellable background search of call paths from the start method to all methods with the searched name.
+ * Found paths are reported in the progress indicator and listed in the Call Paths tool window while the search runs.
+ */
+final class CallPathSearchTask extends Task.Backgroundable implements CallPathListener {
+    private final PsiMethod start;
+    private final String searchedMethodName;
+    private final QueryStats stats;
+    private final CallPathResults results;
+    private ProgressIndicator indicator;
+    private boolean targetsFound;
+
+    CallPathSearchTask(@NotNull Project project, @NotNull PsiMethod start, @NotNull String searchedMethodName) {
+        super(project, "Finding call paths to " + searchedMethodName, true);
+        this.start = start;
+        this.searchedMethodName = searchedMethodName;
+        this.stats = new QueryStats(CallPathSearchService.describe(start) + " -> " + searchedMethodName);
+        this.results = new CallPathResults(project, start.getName() + " -> " + searchedMethodName,
+                SearchLimits.DEFAULT.maxPaths());
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        this.indicator = indicator;
+        indicator.setIndeterminate(true);
+        indicator.setText("Looking for methods named " + searchedMethodName);
+        Project project = getProject();
+        List<PsiMethod> targets = stats.time(QueryStats.Phase.TARGET_LOOKUP, () -> ReadAction.compute(() -> Arrays.asList(
+                PsiShortNamesCache.getInstance(project) // get all methods with the given name
+                        .getMethodsByName(searchedMethodName, SearchScopes.targetScope(start)))));
+        targetsFound = !targets.isEmpty();
+        if (!targetsFound) {
+            return;
+        }
+        indicator.setText("Finding call paths to " + targets.size() + " methods named " + searchedMethodName);
+        ApplicationManager.getApplication().invokeLater(() -> CallPathResultsToolWindowFactory.show(project, results));
+        CallPathSearchService service = CallPathSearchService.getInstance(project);
+        CallPathSearchService.Search search =
+                service.searchAll(new PathFinder(start, stats), targets, SearchLimits.DEFAULT, indicator, this);
+        try {
+            awaitResults(search.getPromise(), indicator);
+        } finally {
+            search.cancel(); // no-op when finished, stops the workers when this task is cancelled, never a newer search
+        }
+    }
+
+    /**
+     * Waits for the search, checking the indicator in between. A search cancelled by a newer one, or a step of it
+     * cancelled from within, ends this task as cancelled rather than failed.
+     */
+    private static void awaitResults(Promise<?> promise, ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                promise.blockingGet(100, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException ignored) {
+                // still running, check for cancellation again
+            } catch (CancellationException e) {
+                indicator.checkCanceled();
+                throw new ProcessCanceledException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ProcessCanceledException || e.getCause() instanceof CancellationException) {
+                    indicator.checkCanceled();
+                    throw new ProcessCanceledException();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void targetStarted(int target, @NotNull String label) {
+        results.targetStarted(target, label);
+    }
+
+    @Override
+    public void pathFound(int target, @NotNull List<String> path, @NotNull List<PsiMethod> methods) {
+        results.addPath(target, methods);
+        pathFound(target, path);
+    }
+
+    @Override
+    public void pathFound(int target, @NotNull List<String> path) {
+        ProgressIndicator indicator = this.indicator;
+        if (indicator != null) {
+            indicator.setText2(results.getTotalPathCount() + " found, latest: " + String.join(" -> ", path));
+        }
+    }
+
+    @Override
+    public void onSuccess() {
+        if (!targetsFound) {
+            Messages.showMessageDialog("Method " + searchedMethodName + " not found", "Error", Messages.getErrorIcon());
+        }
+    }
+
+    @Override
+    public void onCancel() {
+        results.setState(CallPathResults.State.CANCELLED);
+    }
+
+    @Override
+    public void onFinished() {
+        if (results.getState() == CallPathResults.State.RUNNING) {
+            results.setState(CallPathResults.State.FINISHED);
+        }
+        QueryDiagnostics.getInstance(getProject()).record(stats);
+    }
+}
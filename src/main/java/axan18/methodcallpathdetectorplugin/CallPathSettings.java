@@ -0,0 +1,148 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Project settings of call path searches, stored in the project configuration.
+ */
+@Service(Service.Level.PROJECT)
+@State(name = "CallPathDetectorSettings", storages = @Storage("callPathDetector.xml"))
+public final class CallPathSettings implements PersistentStateComponent<CallPathSettings.Options> {
+    public static final int DEFAULT_CALLER_CACHE_BUDGET_MB = 64;
+
+    /**
+     * Where the callers of a method are searched for.
+     */
+    public enum CallerScope {
+        /** Project files the start method's module depends on, without libraries. */
+        PROJECT("Project files"),
+        /** Files of the start method's module only. */
+        MODULE("Module of the start method"),
+        /** A named scope chosen by the user, within the modules the start method's module depends on. */
+        CUSTOM("Custom scope");
+
+        private final String presentableName;
+
+        CallerScope(String presentableName) {
+            this.presentableName = presentableName;
+        }
+
+        @Override
+        public String toString() {
+            return presentableName;
+        }
+    }
+
+    /**
+     * The persisted settings. Fields are public so they are serialized.
+     */
+    public static final class Options {
+        public CallerScope callerScope = CallerScope.PROJECT;
+        public String customScope = "";
+        public boolean useCompilerReferences = true;
+        public List<String> asyncBoundaryRules = new ArrayList<>(AsyncBoundaries.DEFAULT_RULES);
+        public boolean dumpQueryStats = false;
+        public int callerCacheBudgetMb = DEFAULT_CALLER_CACHE_BUDGET_MB;
+    }
+
+
+    private Options options = new Options();
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+
+    public static CallPathSettings getInstance(@NotNull Project project) {
+        return project.getService(CallPathSettings.class);
+    }
+
+    @Override
+    public @NotNull Options getState() {
+        return options;
+    }
+
+    @Override
+    public void loadState(@NotNull Options state) {
+        options = state;
+        modificationTracker.incModificationCount();
+    }
+
+    /**
+     * @return the tracker changing whenever settings that affect which calls are found change
+     */
+    public @NotNull ModificationTracker getModificationTracker() {
+        return modificationTracker;
+    }
+
+    public @NotNull CallerScope getCallerScope() {
+        return options.callerScope != null ? options.callerScope : CallerScope.PROJECT;
+    }
+
+    public void setCallerScope(@NotNull CallerScope callerScope) {
+        options.callerScope = callerScope;
+    }
+
+    /**
+     * @return the id of the named scope used when the caller scope is {@link CallerScope#CUSTOM}
+     */
+    public @NotNull String getCustomScope() {
+        return options.customScope != null ? options.customScope : "";
+    }
+
+    public void setCustomScope(@NotNull String customScope) {
+        options.customScope = customScope;
+    }
+
+    /**
+     * @return whether caller searches skip compiled files that do not call the method according to the compiler index
+     */
+    public boolean isUseCompilerReferences() {
+        return options.useCompilerReferences;
+    }
+
+    public void setUseCompilerReferences(boolean useCompilerReferences) {
+        options.useCompilerReferences = useCompilerReferences;
+    }
+
+    /**
+     * @return the rules of {@link AsyncBoundaries}, one per element
+     */
+    public @NotNull List<String> getAsyncBoundaryRules() {
+        return options.asyncBoundaryRules != null ? Collections.unmodifiableList(options.asyncBoundaryRules) : List.of();
+    }
+
+    public void setAsyncBoundaryRules(@NotNull List<String> rules) {
+        options.asyncBoundaryRules = new ArrayList<>(rules);
+        modificationTracker.incModificationCount();
+    }
+
+    /**
+     * @return whether the statistics of every query are appended as JSON to a file in the IDE log directory
+     */
+    public boolean isDumpQueryStats() {
+        return options.dumpQueryStats;
+    }
+
+    public void setDumpQueryStats(boolean dumpQueryStats) {
+        options.dumpQueryStats = dumpQueryStats;
+    }
+
+    /**
+     * @return the estimated memory in megabytes up to which resolved callers are held strongly, at least 1
+     */
+    public int getCallerCacheBudgetMb() {
+        return Math.max(1, options.callerCacheBudgetMb);
+    }
+
+    public void setCallerCacheBudgetMb(int callerCacheBudgetMb) {
+        options.callerCacheBudgetMb = callerCacheBudgetMb;
+    }
+}
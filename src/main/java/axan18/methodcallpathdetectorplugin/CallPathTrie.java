@@ -0,0 +1,104 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.psi.PsiMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Call paths stored as a trie of parent pointers rooted at the target method.
+ * Paths found one after another by the depth-first search share the nodes of their common part,
+ * so every path costs only the calls it does not share with the previous one.
+ */
+public final class CallPathTrie {
+    private static final int NO_PARENT = -1;
+
+    private final MethodIds ids;
+    private int[] methods = new int[64];
+    private int[] parents = new int[64];
+    private int nodeCount;
+    private int[] leaves = new int[16];
+    private int pathCount;
+    private int[] lastBranch = new int[16]; // the previously added branch and its nodes, for sharing prefixes
+    private int[] lastNodes = new int[16];
+    private int lastLength;
+
+    CallPathTrie(MethodIds ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Adds a branch of the backward search as a new path.
+     *
+     * @param branch the method ids from the target to the start method
+     * @param length the number of methods in the branch
+     * @return the number of paths stored
+     */
+    int addPath(int[] branch, int length) {
+        int common = 0;
+        while (common < length && common < lastLength && lastBranch[common] == branch[common]) {
+            common++;
+        }
+        if (length > lastBranch.length) {
+            lastBranch = Arrays.copyOf(lastBranch, Math.max(length, lastBranch.length * 2));
+            lastNodes = Arrays.copyOf(lastNodes, lastBranch.length);
+        }
+        for (int i = common; i < length; i++) {
+            lastNodes[i] = addNode(i == 0 ? NO_PARENT : lastNodes[i - 1], branch[i]);
+            lastBranch[i] = branch[i];
+        }
+        lastLength = length;
+        if (pathCount == leaves.length) {
+            leaves = Arrays.copyOf(leaves, pathCount * 2);
+        }
+        leaves[pathCount++] = lastNodes[length - 1];
+        return pathCount;
+    }
+
+    private int addNode(int parent, int method) {
+        if (nodeCount == methods.length) {
+            methods = Arrays.copyOf(methods, nodeCount * 2);
+            parents = Arrays.copyOf(parents, nodeCount * 2);
+        }
+        methods[nodeCount] = method;
+        parents[nodeCount] = parent;
+        return nodeCount++;
+    }
+
+    public int getPathCount() {
+        return pathCount;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the methods of the path with the specified index, from the start method to the last method before the target.
+     *
+     * @param index the index of the path
+     * @return the methods of the path
+     */
+    public List<PsiMethod> getPath(int index) {
+        List<PsiMethod> path = new ArrayList<>();
+        for (int node = leaves[index]; parents[node] != NO_PARENT; node = parents[node]) {
+            path.add(ids.method(methods[node]));
+        }
+        return path;
+    }
+
+    /**
+     * Returns the method names of the path with the specified index, from the start method to the last method before the target.
+     *
+     * @param index the index of the path
+     * @return the method names of the path
+     */
+    public List<String> getPathNames(int index) {
+        List<String> names = new ArrayList<>();
+        for (int node = leaves[index]; parents[node] != NO_PARENT; node = parents[node]) {
+            names.add(ids.method(methods[node]).getName());
+        }
+        return names;
+    }
+}
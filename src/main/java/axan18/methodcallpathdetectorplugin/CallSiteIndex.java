@@ -0,0 +1,207 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Persistent index of the outgoing call sites of every Java method, keyed by the name of the called method.
+ * Lets caller lookup resolve only the call sites that may refer to a method instead of every word occurrence of its name.
+ */
+public final class CallSiteIndex extends FileBasedIndexExtension<String, List<CallSiteIndex.CallSite>> {
+    public static final ID<String, List<CallSite>> NAME = ID.create("axan18.methodcallpathdetectorplugin.CallSiteIndex");
+    static final int ANY_ARITY = -1; // method references do not tell how many arguments are passed
+
+    /**
+     * A single call site recorded in a file.
+     *
+     * @param offset the offset of the called method name in the file
+     * @param arity the number of arguments passed, or {@link #ANY_ARITY} for method references
+     */
+    public record CallSite(int offset, int arity) {
+    }
+
+    @Override
+    public @NotNull ID<String, List<CallSite>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<CallSite>, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, List<CallSite>> callSites = new HashMap<>();
+            inputData.getPsiFile().accept(new JavaRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitMethodCallExpression(@NotNull PsiMethodCallExpression expression) {
+                    super.visitMethodCallExpression(expression);
+                    record(expression.getMethodExpression(), expression.getArgumentList().getExpressions().length);
+                }
+
+                @Override
+                public void visitMethodReferenceExpression(@NotNull PsiMethodReferenceExpression expression) {
+                    super.visitMethodReferenceExpression(expression);
+                    record(expression, ANY_ARITY);
+                }
+
+                private void record(PsiReferenceExpression reference, int arity) {
+                    PsiElement nameElement = reference.getReferenceNameElement();
+                    String name = reference.getReferenceName();
+                    if (nameElement == null || name == null) {
+                        return; // incomplete code
+                    }
+                    callSites.computeIfAbsent(name, key -> new ArrayList<>())
+                            .add(new CallSite(nameElement.getTextRange().getStartOffset(), arity));
+                }
+            });
+            return callSites;
+        };
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<CallSite>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<CallSite> value) throws IOException {
+                DataInputOutputUtil.writeINT(out, value.size());
+                for (CallSite site : value) {
+                    DataInputOutputUtil.writeINT(out, site.offset());
+                    DataInputOutputUtil.writeINT(out, site.arity() + 1); // shifted to keep ANY_ARITY non-negative
+                }
+            }
+
+            @Override
+            public List<CallSite> read(@NotNull DataInput in) throws IOException {
+                int size = DataInputOutputUtil.readINT(in);
+                List<CallSite> value = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    int offset = DataInputOutputUtil.readINT(in);
+                    int arity = DataInputOutputUtil.readINT(in) - 1;
+                    value.add(new CallSite(offset, arity));
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * Hands the references calling the specified method to the processor one at a time, resolving each call site
+     * only when the previous one was processed, so the search costs nothing past the point the processor stops it.
+     *
+     * @param method the method to find call sites of
+     * @param scope the scope to search in, further limited to the use scope of the method
+     * @param processor the processor of references, returning false to stop the search
+     * @return false if the processor stopped the search, true otherwise
+     */
+    public static boolean processCallSites(@NotNull PsiMethod method, @NotNull GlobalSearchScope scope,
+                                           @NotNull Processor<? super PsiElement> processor) {
+        return processCallSites(method, scope, null, processor);
+    }
+
+    /**
+     * Same as {@link #processCallSites(PsiMethod, GlobalSearchScope, Processor)}, counting the scanned call sites
+     * and timing the index scan apart from resolving the call sites.
+     *
+     * @param method the method to find call sites of
+     * @param scope the scope to search in, further limited to the use scope of the method
+     * @param stats the statistics of the query, or null
+     * @param processor the processor of references, returning false to stop the search
+     * @return false if the processor stopped the search, true otherwise
+     */
+    public static boolean processCallSites(@NotNull PsiMethod method, @NotNull GlobalSearchScope scope,
+                                           @Nullable QueryStats stats, @NotNull Processor<? super PsiElement> processor) {
+        Project project = method.getProject();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        int parameters = method.getParameterList().getParametersCount();
+        boolean varArgs = method.isVarArgs();
+        long startTime = System.nanoTime();
+        long[] resolveNanos = {0};
+        try {
+            return FileBasedIndex.getInstance().processValues(NAME, method.getName(), null, (file, callSites) -> {
+                PsiFile psiFile = psiManager.findFile(file);
+                if (psiFile == null) {
+                    return true;
+                }
+                for (CallSite site : callSites) {
+                    if (!isCompatibleArity(site.arity(), parameters, varArgs)) {
+                        continue;
+                    }
+                    long resolveStart = System.nanoTime();
+                    PsiReferenceExpression reference =
+                            PsiTreeUtil.getParentOfType(psiFile.findElementAt(site.offset()), PsiReferenceExpression.class);
+                    boolean calls = reference != null && reference.isReferenceTo(method);
+                    resolveNanos[0] += System.nanoTime() - resolveStart;
+                    if (stats != null) {
+                        stats.referenceScanned();
+                    }
+                    if (calls && !processor.process(reference)) {
+                        return false;
+                    }
+                }
+                return true;
+            }, searchScope(method, project).intersectWith(scope));
+        } finally {
+            if (stats != null) { // the processor's own time counts as searching, it only looks at the call site
+                stats.addTime(QueryStats.Phase.RESOLVE, resolveNanos[0]);
+                stats.addTime(QueryStats.Phase.REFERENCE_SEARCH, System.nanoTime() - startTime - resolveNanos[0]);
+            }
+        }
+    }
+
+    /**
+     * Checks if a call with the specified number of arguments may invoke a method with the given parameters.
+     *
+     * @param arity the number of arguments of the call
+     * @param parameters the number of parameters of the method
+     * @param varArgs whether the method takes variable arguments
+     * @return true if the call may invoke the method, false otherwise
+     */
+    private static boolean isCompatibleArity(int arity, int parameters, boolean varArgs) {
+        return arity == ANY_ARITY || arity == parameters || (varArgs && arity >= parameters - 1);
+    }
+
+    private static GlobalSearchScope searchScope(PsiMethod method, Project project) {
+        SearchScope useScope = PsiSearchHelper.getInstance(project).getUseScope(method);
+        if (useScope instanceof GlobalSearchScope globalScope) {
+            return globalScope;
+        }
+        PsiFile file = method.getContainingFile();
+        return file != null ? GlobalSearchScope.fileScope(file) : GlobalSearchScope.projectScope(project);
+    }
+}
@@ -0,0 +1,118 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Resolves calls going forward: from a method to the methods it calls.
+ */
+final class CalleeResolver {
+    private CalleeResolver() {
+    }
+
+    /**
+     * Resolves the methods called from the body of the specified method, including calls inside lambdas and local classes.
+     *
+     * @param method the method whose body is inspected
+     * @param includeCall the filter of call elements whose callees are included
+     * @return the set of methods called by the method, empty if the method has no body
+     */
+    static Set<PsiMethod> resolveCallees(@NotNull PsiMethod method, @NotNull Predicate<PsiElement> includeCall) {
+        Set<PsiMethod> callees = new LinkedHashSet<>();
+        processCalls(method, (call, callee) -> {
+            if (includeCall.test(call)) {
+                callees.add(callee);
+            }
+            return true;
+        });
+        return callees;
+    }
+
+    /**
+     * Finds the first call of a method in the body of another one, for navigating to it.
+     *
+     * @param method the method whose body is inspected
+     * @param callee the called method
+     * @param includeCall the filter of call elements that count as calls
+     * @return the call element, or null if the method does not call the callee
+     */
+    static @Nullable PsiElement findCall(@NotNull PsiMethod method, @NotNull PsiMethod callee,
+                                         @NotNull Predicate<PsiElement> includeCall) {
+        PsiElement[] found = {null};
+        processCalls(method, (call, resolved) -> {
+            if (resolved.equals(callee) && includeCall.test(call)) {
+                found[0] = call;
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    /**
+     * Hands the calls in the body of the specified method, including calls inside lambdas and local classes,
+     * to the processor with the method they resolve to. Unresolved calls are skipped.
+     *
+     * @param method the method whose body is inspected
+     * @param processor the processor of calls and their callees, returning false to stop
+     */
+    private static void processCalls(@NotNull PsiMethod method, @NotNull BiPredicate<PsiElement, PsiMethod> processor) {
+        PsiCodeBlock body = method.getBody();
+        if (body == null) {
+            return;
+        }
+        body.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethodCallExpression(@NotNull PsiMethodCallExpression expression) {
+                super.visitMethodCallExpression(expression);
+                processIfResolved(expression, expression.resolveMethod());
+            }
+
+            @Override
+            public void visitMethodReferenceExpression(@NotNull PsiMethodReferenceExpression expression) {
+                super.visitMethodReferenceExpression(expression);
+                processIfResolved(expression, expression.resolve());
+            }
+
+            @Override
+            public void visitNewExpression(@NotNull PsiNewExpression expression) {
+                super.visitNewExpression(expression);
+                processIfResolved(expression, expression.resolveConstructor());
+            }
+
+            private void processIfResolved(PsiElement call, PsiElement resolved) {
+                if (resolved instanceof PsiMethod callee && !processor.test(call, callee)) {
+                    stopWalking();
+                }
+            }
+        });
+    }
+
+    /**
+     * Collects all methods reachable forward from the specified method, the method itself included.
+     *
+     * @param start the method to start from
+     * @return the set of reachable methods
+     */
+    static Set<PsiMethod> collectReachable(@NotNull PsiMethod start) {
+        Set<PsiMethod> reachable = new HashSet<>();
+        Deque<PsiMethod> queue = new ArrayDeque<>();
+        reachable.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            ProgressManager.checkCanceled();
+            for (PsiMethod callee : resolveCallees(queue.poll(), call -> true)) {
+                if (reachable.add(callee)) {
+                    queue.add(callee);
+                }
+            }
+        }
+        return reachable;
+    }
+}
@@ -0,0 +1,162 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Project-level cache of resolved callers, shared by all path queries. Callers are cached per search scope,
+ * as queries started from different modules or with different settings search callers in different scopes.
+ * An edit evicts only the entries the changed files may affect; everything is dropped when the project roots change
+ * or when the settings deciding which calls are found, such as the asynchronous boundary rules, change.
+ * The caller lists are held in a {@link BoundedCache}: the recently used ones strongly up to the memory budget set in
+ * the settings, the others softly, so a long session on a large project does not fill the heap with callers.
+ * Methods are kept as keys and smart pointers rather than PSI, so a cached entry does not keep the syntax trees
+ * of the files it refers to loaded, and the budget accounts for everything an entry retains.
+ */
+@Service(Service.Level.PROJECT)
+public final class CallerCache implements Disposable {
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private static final long ENTRY_BYTES = 160; // map entry, key, value, list and array headers
+    private static final long POINTER_BYTES = 80; // a smart pointer with its anchor in the file, and the reference to it
+
+    private final Project project;
+    private final CachedValue<BoundedCache<CallersKey, Callers>> callers;
+    private final Set<VirtualFile> changedFiles = ConcurrentHashMap.newKeySet(); // not yet evicted from the cache
+
+    /**
+     * @param method the key of the method, see {@link MethodKeys#keyOf(PsiMethod)}
+     * @param scope the scope callers were searched in
+     */
+    private record CallersKey(String method, GlobalSearchScope scope) {
+    }
+
+    /**
+     * The callers of a method, with what eviction needs to know about the method without restoring it.
+     */
+    private record Callers(SmartPsiElementPointer<PsiMethod> method, String name, boolean constructor,
+                           List<SmartPsiElementPointer<PsiMethod>> callers) {
+    }
+
+    public CallerCache(@NotNull Project project) {
+        this.project = project;
+        this.callers = CachedValuesManager.getManager(project).createCachedValue(
+                () -> CachedValueProvider.Result.create(
+                        new BoundedCache<>(budget(), (CallersKey key, Callers callers) -> ENTRY_BYTES
+                                + 2L * key.method().length() + POINTER_BYTES * (callers.callers().size() + 1)),
+                        ProjectRootModificationTracker.getInstance(project),
+                        CallPathSettings.getInstance(project).getModificationTracker()),
+                false);
+        CallGraphChangeTracker.getInstance(project).addListener(changedFiles::add, this);
+    }
+
+    public static CallerCache getInstance(@NotNull Project project) {
+        return project.getService(CallerCache.class);
+    }
+
+    /**
+     * Returns the callers of the specified method, resolving them only if they are not cached yet.
+     * The resolver runs outside any lock, so concurrent queries may resolve the same method twice,
+     * but only the first result is kept. Callers removed from the code since they were cached are left out.
+     * The hits and misses are counted in {@link #getStats()}. Must be called in a read action.
+     *
+     * @param method the method whose callers are requested
+     * @param scope the scope the resolver searches callers in
+     * @param resolver the function resolving callers on a cache miss
+     * @return the list of callers of the method
+     */
+    public List<PsiMethod> getCallers(@NotNull PsiMethod method, @NotNull GlobalSearchScope scope,
+                                      @NotNull Function<PsiMethod, List<PsiMethod>> resolver) {
+        BoundedCache<CallersKey, Callers> cache = callers.getValue();
+        cache.setBudget(budget());
+        if (!changedFiles.isEmpty()) {
+            evictChanged(cache);
+        }
+        SmartPointerManager pointers = SmartPointerManager.getInstance(project);
+        Callers cached = cache.get(new CallersKey(MethodKeys.keyOf(method), scope), key -> {
+            List<SmartPsiElementPointer<PsiMethod>> resolved = new ArrayList<>();
+            for (PsiMethod caller : resolver.apply(method)) {
+                resolved.add(pointers.createSmartPsiElementPointer(caller));
+            }
+            return new Callers(pointers.createSmartPsiElementPointer(method), method.getName(), method.isConstructor(),
+                    List.copyOf(resolved));
+        });
+        List<PsiMethod> result = new ArrayList<>(cached.callers().size());
+        for (SmartPsiElementPointer<PsiMethod> pointer : cached.callers()) {
+            PsiMethod caller = pointer.getElement();
+            if (caller != null) {
+                result.add(caller);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private long budget() {
+        return CallPathSettings.getInstance(project).getCallerCacheBudgetMb() * BYTES_PER_MB;
+    }
+
+    /**
+     * @return the size and the hit, miss and eviction counters of the cache since the project roots or settings last changed
+     */
+    @NotNull BoundedCache.Stats getStats() {
+        return callers.getValue().getStats();
+    }
+
+    /**
+     * Evicts the entries the changed files may affect: methods declared in them or called by name from them,
+     * methods with a caller declared in them, and all constructors, which may be called implicitly.
+     * Runs in the read action of a query, before any cached entry is used.
+     *
+     * @param cache the cached callers
+     */
+    private void evictChanged(BoundedCache<CallersKey, Callers> cache) {
+        List<VirtualFile> files = new ArrayList<>(changedFiles);
+        Set<VirtualFile> changed = new HashSet<>(files);
+        Set<String> calledNames = new HashSet<>();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (VirtualFile file : files) {
+            PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+            if (psiFile != null) {
+                psiFile.accept(new JavaRecursiveElementWalkingVisitor() {
+                    @Override
+                    public void visitReferenceElement(@NotNull PsiJavaCodeReferenceElement reference) {
+                        super.visitReferenceElement(reference);
+                        calledNames.add(reference.getReferenceName());
+                    }
+
+                    @Override
+                    public void visitReferenceExpression(@NotNull PsiReferenceExpression expression) {
+                        super.visitReferenceExpression(expression);
+                        calledNames.add(expression.getReferenceName());
+                    }
+                });
+            }
+        }
+        cache.removeIf((key, callers) -> isDeclaredIn(callers.method(), changed)
+                || callers.constructor()
+                || calledNames.contains(callers.name())
+                || callers.callers().stream().anyMatch(caller -> isDeclaredIn(caller, changed)));
+        changedFiles.removeAll(files); // changes come in write actions, so none can arrive while this runs
+    }
+
+    private static boolean isDeclaredIn(SmartPsiElementPointer<PsiMethod> method, Set<VirtualFile> files) {
+        VirtualFile file = method.getVirtualFile();
+        return file == null || files.contains(file);
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,35 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.compiler.CompilerReferenceService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Narrows caller searches with the backward-reference index javac builds when the project is compiled.
+ * The index knows which compiled files reference a method, so only these files and the files modified since the last
+ * build are searched; the others are skipped without being parsed or resolved.
+ */
+final class CompilerReferences {
+    private CompilerReferences() {
+    }
+
+    /**
+     * Limits the scope of a caller search to the files that may reference the method according to the compiler index.
+     * The scope is returned unchanged if the index is disabled in the settings, not enabled in the IDE, or not built yet.
+     *
+     * @param method the method whose callers are searched
+     * @param scope the scope of the search
+     * @return the narrowed scope
+     */
+    static @NotNull GlobalSearchScope narrow(@NotNull PsiMethod method, @NotNull GlobalSearchScope scope) {
+        Project project = method.getProject();
+        if (!CallPathSettings.getInstance(project).isUseCompilerReferences()) {
+            return scope;
+        }
+        CompilerReferenceService service = CompilerReferenceService.getInstanceIfEnabled(project);
+        GlobalSearchScope withReferences = service != null ? service.getScopeWithCodeReferences(method) : null;
+        return withReferences != null ? scope.intersectWith(withReferences) : scope;
+    }
+}
@@ -0,0 +1,116 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.psi.PsiMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Call paths over the condensed call graph, where every cycle of mutually recursive methods is a single step.
+ * Each path is a sequence of components from the one of the start method to the one of the target;
+ * concrete paths through the cycles are enumerated only on request.
+ */
+public final class CondensedCallPaths {
+    private final MethodIds ids;
+    private final StronglyConnectedComponents components;
+    private final List<int[]> paths;
+    private final int startId;
+    private final int targetId;
+
+    CondensedCallPaths(MethodIds ids, StronglyConnectedComponents components, List<int[]> paths, int startId, int targetId) {
+        this.ids = ids;
+        this.components = components;
+        this.paths = paths;
+        this.startId = startId;
+        this.targetId = targetId;
+    }
+
+    public int getPathCount() {
+        return paths.size();
+    }
+
+    /**
+     * Returns the components of the path with the specified index, from the start method to the target.
+     *
+     * @param index the index of the path
+     * @return the methods of every component on the path
+     */
+    public List<List<PsiMethod>> getPath(int index) {
+        List<List<PsiMethod>> path = new ArrayList<>();
+        for (int component : paths.get(index)) {
+            List<PsiMethod> methods = new ArrayList<>();
+            for (int member : components.members(component)) {
+                methods.add(ids.method(member));
+            }
+            path.add(methods);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the path with the specified index as names, cycles written as sets of method names in braces.
+     * The target method is left out unless it is part of a cycle on the path.
+     *
+     * @param index the index of the path
+     * @return the names of the steps of the path
+     */
+    public List<String> getPathNames(int index) {
+        int[] path = paths.get(index);
+        List<String> names = new ArrayList<>(path.length);
+        for (int component : path) {
+            int[] members = components.members(component);
+            if (members.length == 1) {
+                if (members[0] != targetId) {
+                    names.add(ids.method(members[0]).getName());
+                }
+                continue;
+            }
+            StringJoiner cycle = new StringJoiner(", ", "{", "}");
+            for (int member : members) {
+                cycle.add(ids.method(member).getName());
+            }
+            names.add(cycle.toString());
+        }
+        return names;
+    }
+
+    /**
+     * Checks if the path with the specified index goes through a cycle of mutually recursive methods.
+     *
+     * @param index the index of the path
+     * @return true if some step of the path is a cycle, false otherwise
+     */
+    public boolean isRecursive(int index) {
+        for (int component : paths.get(index)) {
+            if (components.size(component) > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    MethodIds getIds() {
+        return ids;
+    }
+
+    int getStartId() {
+        return startId;
+    }
+
+    int getTargetId() {
+        return targetId;
+    }
+
+    int getComponentCount() {
+        return components.count();
+    }
+
+    int componentOf(int method) {
+        return components.componentOf(method);
+    }
+
+    int[] getComponentPath(int index) {
+        return paths.get(index);
+    }
+}
@@ -0,0 +1,189 @@
+package axan18.methodcallpathdetectorplugin;
+
+import java.util.Arrays;
+
+/**
+ * Immutable call graph stored in compressed sparse row form: the callers of method m are
+ * {@code callers[callerOffsets[m]..callerOffsets[m + 1])}, and the same for callees.
+ * The whole graph lives in four int arrays, about 8 bytes per call and 8 bytes per method.
+ */
+public final class CsrCallGraph implements CallGraph {
+    public static final CsrCallGraph EMPTY = new Builder().build(0);
+
+    private final int[] callerOffsets;
+    private final int[] callers;
+    private final int[] calleeOffsets;
+    private final int[] callees;
+
+    private CsrCallGraph(int[] callerOffsets, int[] callers, int[] calleeOffsets, int[] callees) {
+        this.callerOffsets = callerOffsets;
+        this.callers = callers;
+        this.calleeOffsets = calleeOffsets;
+        this.callees = callees;
+    }
+
+    /**
+     * Copies the specified graph, resolving every method of a lazily explored graph.
+     *
+     * @param graph the graph to copy
+     * @return the array-backed copy of the graph
+     */
+    public static CsrCallGraph copyOf(CallGraph graph) {
+        Builder builder = new Builder();
+        for (int method = 0; method < graph.nodeCount(); method++) { // a lazy graph grows while it is copied
+            for (int i = 0; i < graph.callerCount(method); i++) {
+                builder.addCall(graph.caller(method, i), method);
+            }
+        }
+        return builder.build(graph.nodeCount());
+    }
+
+    /**
+     * Returns a copy of this graph with the callees of some methods replaced. The rows are rebuilt from the int arrays
+     * with a counting sort, so the patched graph is as compact and as fast to scan as a freshly built one.
+     *
+     * @param nodeCount the number of methods of the patched graph, at least the number of methods of this graph
+     * @param callees the new callees indexed by method, {@code null} for the methods whose calls did not change;
+     *                may be shorter than the patched graph
+     * @return the patched graph
+     */
+    public CsrCallGraph withCallees(int nodeCount, int[][] callees) {
+        int replacedCalls = 0;
+        for (int[] row : callees) {
+            replacedCalls += row == null ? 0 : row.length;
+        }
+        Builder builder = new Builder(getCallCount() + replacedCalls);
+        for (int method = 0; method < nodeCount; method++) {
+            int[] row = method < callees.length ? callees[method] : null;
+            if (row != null) {
+                for (int callee : row) {
+                    builder.addCall(method, callee);
+                }
+            } else if (method < nodeCount()) {
+                for (int i = calleeOffsets[method]; i < calleeOffsets[method + 1]; i++) {
+                    builder.addCall(method, this.callees[i]);
+                }
+            }
+        }
+        return builder.build(nodeCount);
+    }
+
+    @Override
+    public int nodeCount() {
+        return callerOffsets.length - 1;
+    }
+
+    @Override
+    public int callerCount(int method) {
+        return callerOffsets[method + 1] - callerOffsets[method];
+    }
+
+    @Override
+    public int caller(int method, int index) {
+        return callers[callerOffsets[method] + index];
+    }
+
+    @Override
+    public int calleeCount(int method) {
+        return calleeOffsets[method + 1] - calleeOffsets[method];
+    }
+
+    @Override
+    public int callee(int method, int index) {
+        return callees[calleeOffsets[method] + index];
+    }
+
+    public int getCallCount() {
+        return callers.length;
+    }
+
+    /**
+     * Collects calls as pairs of ids and sorts them into rows once, with a counting sort.
+     */
+    public static final class Builder {
+        private int[] calls; // caller and callee of every call, interleaved
+        private int size;
+
+        public Builder() {
+            this(32);
+        }
+
+        /**
+         * @param expectedCalls the number of calls expected, so the builder does not have to grow
+         */
+        public Builder(int expectedCalls) {
+            calls = new int[Math.max(2, expectedCalls * 2)];
+        }
+
+        /**
+         * Adds a call to the graph. Duplicate calls are kept once.
+         *
+         * @param caller the id of the calling method
+         * @param callee the id of the called method
+         * @return this builder
+         */
+        public Builder addCall(int caller, int callee) {
+            if (caller < 0 || callee < 0) {
+                throw new IllegalArgumentException("Method ids must not be negative: " + caller + ", " + callee);
+            }
+            if (size + 2 > calls.length) {
+                calls = Arrays.copyOf(calls, calls.length * 2);
+            }
+            calls[size++] = caller;
+            calls[size++] = callee;
+            return this;
+        }
+
+        /**
+         * Builds the graph. Ids not used by any call become methods without calls.
+         *
+         * @param nodeCount the number of methods, larger than every id added
+         * @return the graph
+         */
+        public CsrCallGraph build(int nodeCount) {
+            int[] callerOffsets = new int[nodeCount + 1];
+            int[] callers = sortIntoRows(1, 0, nodeCount, callerOffsets);
+            int[] calleeOffsets = new int[nodeCount + 1];
+            int[] callees = sortIntoRows(0, 1, nodeCount, calleeOffsets);
+            return new CsrCallGraph(callerOffsets, callers, calleeOffsets, callees);
+        }
+
+        /**
+         * Sorts the calls into rows by one end of the call, keeping the other end, with duplicates removed.
+         *
+         * @param row the position of the row end in a call, 0 for the caller and 1 for the callee
+         * @param value the position of the stored end in a call
+         * @param nodeCount the number of methods
+         * @param offsets filled with the start of every row, and the end of the last one
+         * @return the stored ends of the calls, row by row
+         */
+        private int[] sortIntoRows(int row, int value, int nodeCount, int[] offsets) {
+            for (int i = 0; i < size; i += 2) {
+                offsets[calls[i + row] + 1]++;
+            }
+            for (int method = 0; method < nodeCount; method++) {
+                offsets[method + 1] += offsets[method];
+            }
+            int[] values = new int[size / 2];
+            int[] filled = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < size; i += 2) {
+                values[filled[calls[i + row]]++] = calls[i + value];
+            }
+            int[] lastRow = new int[nodeCount]; // deduplicates the values of the row being compacted
+            Arrays.fill(lastRow, -1);
+            int kept = 0;
+            for (int method = 0; method < nodeCount; method++) {
+                int rowStart = kept;
+                for (int i = offsets[method]; i < offsets[method + 1]; i++) {
+                    if (lastRow[values[i]] != method) {
+                        lastRow[values[i]] = method;
+                        values[kept++] = values[i];
+                    }
+                }
+                offsets[method] = rowStart;
+            }
+            offsets[nodeCount] = kept;
+            return kept == values.length ? values : Arrays.copyOf(values, kept);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package axan18.methodcallpathdetectorplugin;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes JSON string literals for the reports of the plugin, which are flat enough not to need a JSON library.
+ */
+final class Json {
+    private Json() {
+    }
+
+    /**
+     * @param value the string to quote
+     * @return the value as a JSON string literal, with quotes, backslashes and control characters escaped
+     */
+    static String quote(@NotNull String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -4,19 +4,12 @@ import com.intellij.openapi.actionSystem.ActionUpdateThread;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
-import com.intellij.openapi.application.ReadAction;
-import com.intellij.openapi.progress.EmptyProgressIndicator;
-import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiMethod;
-import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.search.PsiShortNamesCache;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.*;
-
 public class MethodCallPathDetector extends AnAction {
     @Override
     public @NotNull ActionUpdateThread getActionUpdateThread() {
@@ -49,42 +42,13 @@ public class MethodCallPathDetector extends AnAction {
             Messages.showMessageDialog("Method name not provided", "Warning", Messages.getWarningIcon());
             return;
         }
-        List<PsiMethod> targets = getTargetMethods(project, searchedMethodName); // get all methods with the given name
-        if (targets.isEmpty()) {
-            Messages.showMessageDialog("Method " + searchedMethodName + " not found", "Error", Messages.getErrorIcon());
-            return;
-        }
-        List<List<String>> allPaths = new ArrayList<>();
-        Set<PsiMethod> visited = new HashSet<>();
-        for (PsiMethod target : targets) { // for each existing method with given name...
-            allPaths = ProgressManager.getInstance().runProcess(
-                    () -> ReadAction.compute(() -> new PathFinder(start).findCallPaths(target, new ArrayList<>(), visited)),
-                    new EmptyProgressIndicator());
-            // Displaying all paths
-            if (!allPaths.isEmpty()) {
-                for (List<String> path : allPaths) {
-                    Messages.showMessageDialog("Call path: " + String.join(" -> ", path),
-                            "Call Path Found", Messages.getInformationIcon());
-                }
-            }
-            visited.clear();
-        }
+        new CallPathSearchTask(project, start, searchedMethodName).queue(); // searches every method with given name
     }
 
     private static boolean notProvided(String searchedMethodName) {
         return searchedMethodName == null || searchedMethodName.trim().isEmpty();
     }
 
-    private static List<PsiMethod> getTargetMethods(Project project, String searchedMethodName) {
-        return ProgressManager.getInstance().runProcess(
-                () -> ReadAction.compute(() -> Arrays.asList(
-                        PsiShortNamesCache.getInstance(project)
-                                .getMethodsByName(searchedMethodName, GlobalSearchScope.allScope(project))
-                )),
-                new EmptyProgressIndicator()
-        );
-    }
-
     private static boolean isMethodEmpty(PsiMethod start) {
         return start.getBody() == null || start.getBody().getStatements().length == 0;
     }
@@ -0,0 +1,153 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.psi.PsiMethod;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Interns methods into dense integer ids for the duration of a single query,
+ * so the search can track methods with int arrays and bitsets instead of object collections.
+ * It is the PSI-backed {@link CallGraph} of the query: calls are resolved the first time the search needs them.
+ */
+final class MethodIds implements CallGraph {
+    private final Object2IntOpenHashMap<PsiMethod> ids = new Object2IntOpenHashMap<>();
+    private final List<PsiMethod> methods = new ArrayList<>();
+    private final Function<PsiMethod, List<PsiMethod>> callerResolver;
+    private final Predicate<PsiMethod> callerFilter;
+    private final Function<PsiMethod, ? extends Collection<PsiMethod>> calleeResolver;
+    private final QueryStats stats;
+    private final BitSet expanded = new BitSet(); // methods whose callers or callees were resolved
+    private int expandedCount;
+    private int[][] callers = new int[64][]; // resolved lazily, indexed by method id
+    private int[][] callees = new int[64][];
+
+    /**
+     * @param callerResolver the function resolving callers of a method
+     * @param callerFilter the filter of callers worth expanding
+     * @param calleeResolver the function resolving callees of a method
+     * @param stats the statistics of the query, counting expanded methods
+     */
+    MethodIds(Function<PsiMethod, List<PsiMethod>> callerResolver, Predicate<PsiMethod> callerFilter,
+              Function<PsiMethod, ? extends Collection<PsiMethod>> calleeResolver, QueryStats stats) {
+        this.callerResolver = callerResolver;
+        this.callerFilter = callerFilter;
+        this.calleeResolver = calleeResolver;
+        this.stats = stats;
+        ids.defaultReturnValue(-1);
+    }
+
+    /**
+     * Returns the id of the specified method, assigning the next free id to methods seen for the first time.
+     *
+     * @param method the method to intern
+     * @return the id of the method
+     */
+    int idOf(PsiMethod method) {
+        int id = ids.getInt(method);
+        if (id < 0) {
+            id = methods.size();
+            methods.add(method);
+            ids.put(method, id);
+        }
+        return id;
+    }
+
+    PsiMethod method(int id) {
+        return methods.get(id);
+    }
+
+    /**
+     * Returns the ids of the callers of the specified method that pass the caller filter.
+     * Callers are resolved once per query and shared by all branches reaching the method.
+     *
+     * @param id the id of the method
+     * @return the ids of the callers
+     */
+    int[] callers(int id) {
+        if (id >= callers.length) {
+            callers = Arrays.copyOf(callers, Math.max(id + 1, callers.length * 2));
+        }
+        int[] resolved = callers[id];
+        if (resolved == null) {
+            expand(id);
+            List<PsiMethod> callerMethods = callerResolver.apply(method(id));
+            int[] callerIds = new int[callerMethods.size()];
+            int count = 0;
+            for (PsiMethod caller : callerMethods) {
+                if (callerFilter.test(caller)) {
+                    callerIds[count++] = idOf(caller);
+                }
+            }
+            resolved = count == callerIds.length ? callerIds : Arrays.copyOf(callerIds, count);
+            callers[id] = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the ids of the methods called by the specified method. Callees are resolved once per query.
+     *
+     * @param id the id of the method
+     * @return the ids of the callees
+     */
+    int[] callees(int id) {
+        if (id >= callees.length) {
+            callees = Arrays.copyOf(callees, Math.max(id + 1, callees.length * 2));
+        }
+        int[] resolved = callees[id];
+        if (resolved == null) {
+            expand(id);
+            Collection<PsiMethod> calleeMethods = calleeResolver.apply(method(id));
+            resolved = new int[calleeMethods.size()];
+            int count = 0;
+            for (PsiMethod callee : calleeMethods) {
+                resolved[count++] = idOf(callee);
+            }
+            callees[id] = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Counts the expansion of a method; the methods interned but not expanded yet are the frontier of the search.
+     */
+    private void expand(int id) {
+        if (!expanded.get(id)) {
+            expanded.set(id);
+            expandedCount++;
+        }
+        stats.methodExpanded(methods.size() - expandedCount);
+    }
+
+    @Override
+    public int nodeCount() {
+        return methods.size();
+    }
+
+    @Override
+    public int callerCount(int method) {
+        return callers(method).length;
+    }
+
+    @Override
+    public int caller(int method, int index) {
+        return callers(method)[index];
+    }
+
+    @Override
+    public int calleeCount(int method) {
+        return callees(method).length;
+    }
+
+    @Override
+    public int callee(int method, int index) {
+        return callees(method)[index];
+    }
+}
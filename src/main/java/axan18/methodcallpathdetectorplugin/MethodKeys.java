@@ -0,0 +1,96 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Builds keys identifying methods independently of their PSI instances, which are recreated when a file is reparsed.
+ */
+final class MethodKeys {
+    private MethodKeys() {
+    }
+
+    /**
+     * Returns the key of the specified method: the qualified name of its class, its name and its parameter types.
+     * Methods of anonymous and local classes are identified by the position of their class in the file.
+     *
+     * @param method the method to identify
+     * @return the key of the method
+     */
+    static String keyOf(@NotNull PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        String className = containingClass != null ? containingClass.getQualifiedName() : null;
+        if (className == null) {
+            PsiFile file = method.getContainingFile();
+            VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+            int offset = containingClass != null ? containingClass.getTextOffset() : method.getTextOffset();
+            className = (virtualFile != null ? virtualFile.getUrl() : "") + "@" + offset;
+        }
+        StringJoiner parameters = new StringJoiner(",", "(", ")");
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            parameters.add(parameter.getType().getCanonicalText());
+        }
+        return className + "#" + method.getName() + parameters;
+    }
+
+    /**
+     * Finds the source methods with the specified key, the reverse of {@link #keyOf(PsiMethod)}.
+     * Several methods are found only when classes with the same qualified name live in several modules.
+     * Must be called in a read action.
+     *
+     * @param project the project
+     * @param key the key of the methods
+     * @param scope the scope the methods are looked up in
+     * @return the methods with the key in the scope, empty if there are none
+     */
+    static List<PsiMethod> findMethods(@NotNull Project project, @NotNull String key, @NotNull GlobalSearchScope scope) {
+        int parameters = key.indexOf('(');
+        int separator = parameters > 0 ? key.lastIndexOf('#', parameters) : -1;
+        if (separator <= 0) {
+            return List.of();
+        }
+        String className = key.substring(0, separator);
+        String name = key.substring(separator + 1, parameters);
+        List<PsiMethod> methods = new ArrayList<>(1);
+        for (PsiClass psiClass : findClasses(project, className, scope)) {
+            for (PsiMethod method : psiClass.findMethodsByName(name, false)) {
+                if (key.equals(keyOf(method))) {
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * @param className a qualified class name, or the url of a file and the offset of a local or anonymous class in it
+     */
+    private static List<PsiClass> findClasses(Project project, String className, GlobalSearchScope scope) {
+        int at = className.lastIndexOf('@');
+        if (at < 0 || !className.contains("://")) {
+            return List.of(JavaPsiFacade.getInstance(project).findClasses(className, scope));
+        }
+        VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(className.substring(0, at));
+        PsiFile psiFile = file != null && scope.contains(file) ? PsiManager.getInstance(project).findFile(file) : null;
+        if (psiFile == null) {
+            return List.of();
+        }
+        int offset;
+        try {
+            offset = Integer.parseInt(className.substring(at + 1));
+        } catch (NumberFormatException e) {
+            return List.of();
+        }
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(psiFile.findElementAt(offset), PsiClass.class, false);
+        return psiClass != null ? List.of(psiClass) : List.of();
+    }
+}
@@ -1,18 +1,49 @@
 package axan18.methodcallpathdetectorplugin;
 
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Processor;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 public class PathFinder {
+    /**
+     * Engines available for finding call paths, selectable to compare them on the same inputs.
+     */
+    public enum SearchEngine {
+        /** Exhaustive backward depth-first search returning every call path. */
+        ALL_PATHS,
+        /** Bidirectional breadth-first search returning only the shortest call path. */
+        SHORTEST_PATH
+    }
+
+    private record Reachable(Set<PsiMethod> methods, long modificationCount) {
+    }
+
     private PsiMethod start;
+    private volatile Reachable reachableFromStart; // methods the start method can reach, computed lazily
+    private volatile GlobalSearchScope callerScope; // computed lazily from the start method and the settings
+    private final QueryStats stats;
     PathFinder(PsiMethod start) {
-        this.start = start;
+        this(start, new QueryStats("Call paths"));
     }
     PathFinder() {
-        this.start = null;
+        this(null);
+    }
+
+    /**
+     * @param start the starting method
+     * @param stats the statistics all searches of this path finder are counted in
+     */
+    PathFinder(PsiMethod start, QueryStats stats) {
+        this.start = start;
+        this.stats = stats;
     }
 
     /**
@@ -22,6 +53,203 @@ public class PathFinder {
      */
     public void setStart(PsiMethod start) {
         this.start = start;
+        this.reachableFromStart = null;
+        this.callerScope = null;
+    }
+
+    /**
+     * @return the statistics of the searches made by this path finder
+     */
+    public QueryStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Finds call paths from the start method to the specified target method with the given engine.
+     *
+     * @param target the method to find call paths to
+     * @param engine the engine used for the search
+     * @return a list of call paths found, each without the target method
+     */
+    public List<List<String>> findCallPaths(PsiMethod target, SearchEngine engine) {
+        return switch (engine) {
+            case ALL_PATHS -> {
+                CallPathTrie trie = collectCallPaths(target, SearchLimits.UNLIMITED);
+                List<List<String>> paths = new ArrayList<>(trie.getPathCount());
+                for (int i = 0; i < trie.getPathCount(); i++) {
+                    paths.add(trie.getPathNames(i));
+                }
+                yield paths;
+            }
+            case SHORTEST_PATH -> findShortestPath(target);
+        };
+    }
+
+    /**
+     * Receives call paths tagged with the target they end at.
+     */
+    @FunctionalInterface
+    public interface TargetPathProcessor {
+        /**
+         * @param target the index of the target the path ends at
+         * @param path the call path, without the target method
+         * @return false to stop the search, true to continue
+         */
+        boolean process(int target, List<String> path);
+    }
+
+    /**
+     * Receives call paths as methods, tagged with the target they end at.
+     */
+    @FunctionalInterface
+    public interface TargetMethodPathProcessor {
+        /**
+         * @param target the index of the target the path ends at
+         * @param methods the methods of the call path from the start method to the target, both included
+         * @return false to stop the search, true to continue
+         */
+        boolean process(int target, List<PsiMethod> methods);
+    }
+
+    /**
+     * Enumerates call paths from the start method to the specified target lazily, handing them to the consumer one at a time.
+     * The search stops as soon as the consumer returns false or the maximum number of paths is reached,
+     * so the full set of paths is never materialized.
+     *
+     * @param target the method to find call paths to
+     * @param limits the maximum number of paths and their maximum depth
+     * @param consumer the consumer of call paths, each without the target method
+     * @return true if all paths within the depth limit were processed, false if the search was stopped early
+     */
+    public boolean processCallPaths(PsiMethod target, SearchLimits limits, Processor<? super List<String>> consumer) {
+        if (target == null) {
+            return true;
+        }
+        return processCallPaths(List.of(target), limits, (index, path) -> consumer.process(path));
+    }
+
+    /**
+     * Enumerates call paths from the start method to all specified targets in a single traversal.
+     * The targets are seeded together and share the interned callers, so a caller common to several targets
+     * is resolved and expanded once per query. The maximum number of paths applies to every target separately.
+     *
+     * @param targets the methods to find call paths to
+     * @param limits the maximum number of paths per target and their maximum depth
+     * @param processor the consumer of call paths tagged with the index of their target
+     * @return true if all paths within the depth limit were processed, false if the search was stopped early
+     */
+    public boolean processCallPaths(List<PsiMethod> targets, SearchLimits limits, TargetPathProcessor processor) {
+        return processCallPathMethods(targets, limits, (target, methods) -> processor.process(target, pathNames(methods)));
+    }
+
+    /**
+     * Same as {@link #processCallPaths(List, SearchLimits, TargetPathProcessor)}, handing over the methods of every path
+     * instead of their names, so the caller can point to the calls of the path.
+     *
+     * @param targets the methods to find call paths to
+     * @param limits the maximum number of paths per target and their maximum depth
+     * @param processor the consumer of call paths tagged with the index of their target
+     * @return true if all paths within the depth limit were processed, false if the search was stopped early
+     */
+    public boolean processCallPathMethods(List<PsiMethod> targets, SearchLimits limits, TargetMethodPathProcessor processor) {
+        return enumerate(() -> enumerateTargets(targets, limits, processor));
+    }
+
+    private boolean enumerateTargets(List<PsiMethod> targets, SearchLimits limits, TargetMethodPathProcessor processor) {
+        MethodIds ids = createMethodIds();
+        BitSet visited = new BitSet(); // restored after every target, reused by the next one
+        boolean[] stopped = {false};
+        boolean completed = true;
+        for (int i = 0; i < targets.size() && !stopped[0]; i++) {
+            if (targets.get(i) == null) {
+                continue;
+            }
+            int target = i;
+            int[] found = {0};
+            completed &= enumerateCallPaths(ids, ids.idOf(targets.get(i)), visited, limits.maxDepth(), (branch, length) -> {
+                stats.pathFound();
+                if (!processor.process(target, toMethods(ids, branch, length))) {
+                    stopped[0] = true;
+                    return false;
+                }
+                return ++found[0] < limits.maxPaths();
+            });
+        }
+        return completed;
+    }
+
+    /**
+     * Prepares the callers of the specified method, so a later traversal finds them already resolved.
+     * Safe to call from several threads at once.
+     *
+     * @param method the method to resolve callers of
+     * @return the callers the traversal continues from: the ones the start method can reach, except the start method
+     */
+    public List<PsiMethod> prefetchCallers(PsiMethod method) {
+        List<PsiMethod> next = new ArrayList<>();
+        for (PsiMethod caller : getCallers(method)) {
+            if (!caller.equals(start) && isReachableFromStart(caller)) {
+                next.add(caller);
+            }
+        }
+        return next;
+    }
+
+    private static List<String> toNames(MethodIds ids, int[] branch, int length) {
+        List<String> names = new ArrayList<>(length - 1);
+        for (int i = length - 1; i > 0; i--) { // from start to target, without the target
+            names.add(ids.method(branch[i]).getName());
+        }
+        return names;
+    }
+
+    /**
+     * @param methods the methods of a call path from the start method to the target
+     * @return the names of the methods of the call path, without the target method
+     */
+    static List<String> pathNames(List<PsiMethod> methods) {
+        List<String> names = new ArrayList<>(methods.size() - 1);
+        for (int i = 0; i < methods.size() - 1; i++) {
+            names.add(methods.get(i).getName());
+        }
+        return names;
+    }
+
+    private static List<PsiMethod> toMethods(MethodIds ids, int[] branch, int length) {
+        List<PsiMethod> methods = new ArrayList<>(length);
+        for (int i = length - 1; i >= 0; i--) { // from start to target
+            methods.add(ids.method(branch[i]));
+        }
+        return methods;
+    }
+
+    private static List<String> pathNames(MethodIds ids, int[] path) {
+        List<String> names = new ArrayList<>(path.length - 1);
+        for (int i = 0; i < path.length - 1; i++) { // the path goes from start to target, the target is left out
+            names.add(ids.method(path[i]).getName());
+        }
+        return names;
+    }
+
+    /**
+     * Collects call paths from the start method to the specified target into a trie sharing common parts of paths.
+     *
+     * @param target the method to find call paths to
+     * @param limits the maximum number of paths and their maximum depth
+     * @return the trie of call paths found
+     */
+    public CallPathTrie collectCallPaths(PsiMethod target, SearchLimits limits) {
+        return enumerate(() -> {
+            MethodIds ids = createMethodIds();
+            CallPathTrie trie = new CallPathTrie(ids);
+            if (target != null) {
+                enumerateCallPaths(ids, ids.idOf(target), new BitSet(), limits.maxDepth(), (branch, length) -> {
+                    stats.pathFound();
+                    return trie.addPath(branch, length) < limits.maxPaths();
+                });
+            }
+            return trie;
+        });
     }
 
     /**
@@ -37,80 +265,353 @@ public class PathFinder {
         if (currentMethod == null || visited.contains(currentMethod)) {
             return allPaths;  // return empty if method is null or already visited
         }
-        visited.add(currentMethod);
-        path.add(currentMethod.getName());
-
-        if (currentMethod.equals(start)) {
-            List<String> fullPath = new ArrayList<>(path);
+        MethodIds ids = createMethodIds();
+        BitSet visitedIds = new BitSet();
+        for (PsiMethod method : visited) {
+            visitedIds.set(ids.idOf(method));
+        }
+        enumerateCallPaths(ids, ids.idOf(currentMethod), visitedIds, Integer.MAX_VALUE, (branch, length) -> {
+            List<String> fullPath = new ArrayList<>(path.size() + length);
+            fullPath.addAll(path);
+            for (int i = 0; i < length; i++) {
+                fullPath.add(ids.method(branch[i]).getName());
+            }
             fullPath.remove(0);  // remove the target method from the path
             Collections.reverse(fullPath);  // reverse the path to show start to target
             allPaths.add(fullPath);
-        } else {
-            // looking for references to the callers of the calling method
-            Collection<PsiReference> references = ReferencesSearch.search(currentMethod).findAll();
-            for (PsiReference reference : references) {
-                PsiElement element = reference.getElement();
-                if (isInsideThreadOrExecutor(element)) { // if the method is inside a new thread, skip it
-                    return allPaths;
-                }
-                PsiMethod caller = PsiTreeUtil.getParentOfType(element, PsiMethod.class);
-                if (caller != null && !visited.contains(caller)) {
-                    List<List<String>> pathsFromCaller = findCallPaths(caller, new ArrayList<>(path), new HashSet<>(visited));
-                    allPaths.addAll(pathsFromCaller);  // add the paths from this caller
-                }
+            return true;
+        });
+        return allPaths;
+    }
+
+    private MethodIds createMethodIds() {
+        return new MethodIds(this::getCallers, this::isReachableFromStart, this::getCallees, stats);
+    }
+
+    /**
+     * Runs a search and counts its time as enumeration, without the callers and callees it resolved on the way,
+     * which are counted in their own phases.
+     *
+     * @param search the search to run
+     * @return the result of the search
+     */
+    private <T> T enumerate(Supplier<T> search) {
+        long resolutionBefore = stats.getCallerResolutionNanos();
+        long startTime = System.nanoTime();
+        try {
+            return search.get();
+        } finally {
+            long resolution = stats.getCallerResolutionNanos() - resolutionBefore;
+            stats.addTime(QueryStats.Phase.ENUMERATION, System.nanoTime() - startTime - resolution);
+        }
+    }
+
+    /**
+     * Walks callers backwards depth-first over interned method ids with {@link CallGraphEngine#enumeratePaths}.
+     *
+     * @param ids the interned methods of the query
+     * @param target the id of the method to find call paths to
+     * @param visited the ids of methods that must not be entered, updated during the search and restored afterwards
+     * @param maxDepth the maximum number of calls in a path
+     * @param consumer the consumer of found branches
+     * @return false if the consumer asked to stop, true otherwise
+     */
+    private boolean enumerateCallPaths(MethodIds ids, int target, BitSet visited, int maxDepth,
+                                       CallGraphEngine.BranchConsumer consumer) {
+        int startId = start != null ? ids.idOf(start) : CallGraphEngine.NONE;
+        return CallGraphEngine.enumeratePaths(ids, target, startId, visited, maxDepth, CallGraphEngine.CallFilter.ALL, consumer);
+    }
+
+    /**
+     * Finds call paths over the condensed call graph, in which every cycle of mutually recursive methods is collapsed into
+     * a single step. The explored callers are condensed with Tarjan's algorithm and the resulting acyclic graph is searched
+     * without any visited sets, expanding only components that lead to the start method, so recursion costs linear time.
+     * Concrete paths through the cycles can be listed afterwards with
+     * {@link #processExpandedPaths(CondensedCallPaths, int, SearchLimits, Processor)}.
+     *
+     * @param target the method to find call paths to
+     * @param limits the maximum number of condensed paths and their maximum number of steps
+     * @return the condensed call paths found
+     */
+    public CondensedCallPaths findCondensedCallPaths(PsiMethod target, SearchLimits limits) {
+        return enumerate(() -> condense(target, limits));
+    }
+
+    private CondensedCallPaths condense(PsiMethod target, SearchLimits limits) {
+        MethodIds ids = createMethodIds();
+        int targetId = target != null ? ids.idOf(target) : -1;
+        int startId = start != null ? ids.idOf(start) : -1;
+        if (targetId < 0 || startId < 0) {
+            return new CondensedCallPaths(ids, new StronglyConnectedComponents(CsrCallGraph.EMPTY), List.of(), startId, targetId);
+        }
+        for (int id = 0; id < ids.nodeCount(); id++) { // ids grow in discovery order, so this explores every caller once
+            ProgressManager.checkCanceled();
+            ids.callers(id);
+        }
+        CallGraphEngine.Condensation condensation =
+                CallGraphEngine.findCondensedPaths(CsrCallGraph.copyOf(ids), startId, targetId, limits);
+        return new CondensedCallPaths(ids, condensation.components(), condensation.paths(), startId, targetId);
+    }
+
+    /**
+     * Expands a condensed call path into concrete call paths, going through the cycles of the path in every possible way.
+     *
+     * @param condensedPaths the condensed call paths found by {@link #findCondensedCallPaths(PsiMethod, SearchLimits)}
+     * @param index the index of the condensed path to expand
+     * @param limits the maximum number of concrete paths and their maximum depth
+     * @param consumer the consumer of concrete call paths, each without the target method
+     * @return true if all concrete paths within the depth limit were processed, false if the expansion was stopped early
+     */
+    public boolean processExpandedPaths(CondensedCallPaths condensedPaths, int index, SearchLimits limits,
+                                        Processor<? super List<String>> consumer) {
+        MethodIds ids = condensedPaths.getIds();
+        int[] componentPath = condensedPaths.getComponentPath(index);
+        int[] positions = new int[condensedPaths.getComponentCount()]; // position on the path counted from the target
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < componentPath.length; i++) {
+            positions[componentPath[componentPath.length - 1 - i]] = i;
+        }
+        CallGraphEngine.CallFilter onPath = (caller, callee) -> { // stay in the component or step to the next one towards the start
+            int callerPosition = positions[condensedPaths.componentOf(caller)];
+            int calleePosition = positions[condensedPaths.componentOf(callee)];
+            return callerPosition >= 0 && (callerPosition == calleePosition || callerPosition == calleePosition + 1);
+        };
+        int[] found = {0};
+        return CallGraphEngine.enumeratePaths(ids, condensedPaths.getTargetId(), condensedPaths.getStartId(), new BitSet(),
+                limits.maxDepth(), onPath,
+                (branch, length) -> consumer.process(toNames(ids, branch, length)) && ++found[0] < limits.maxPaths());
+    }
+
+    /**
+     * Finds the shortest call path with a bidirectional breadth-first search: one frontier grows forward from the start method,
+     * the other backward from the target, and the smaller one is expanded level by level until they meet.
+     *
+     * @param target the method to find the call path to
+     * @return a list with the shortest call path without the target method, or an empty list if there is no path
+     */
+    private List<List<String>> findShortestPath(PsiMethod target) {
+        if (start == null || target == null) {
+            return List.of();
+        }
+        if (!start.equals(target) && isCalledFromStart(target)) {
+            return List.of(List.of(start.getName()));
+        }
+        return enumerate(() -> {
+            // callers are not pruned to the forward cone, computing it would cost more than the bidirectional search
+            MethodIds ids = new MethodIds(this::getCallers, method -> true, this::getCallees, stats);
+            int[] path = CallGraphEngine.findShortestPath(ids, ids.idOf(start), ids.idOf(target));
+            if (path == null) {
+                return List.of();
             }
+            stats.pathFound();
+            return List.of(pathNames(ids, path));
+        });
+    }
+
+    /**
+     * Checks if there is a call path from the start method to the specified target.
+     * The answer comes from the reachability index of the project call graph when it is up to date; otherwise the
+     * shortest path search answers while the index is updated in the background.
+     *
+     * @param target the method to check
+     * @return true if the target is reachable from the start method, false otherwise
+     */
+    public boolean canReach(PsiMethod target) {
+        if (start == null || target == null) {
+            return false;
         }
-        return allPaths;
+        Boolean indexed = ProjectCallGraph.getInstance(start.getProject()).canReach(start, target);
+        return indexed != null ? indexed : !findShortestPath(target).isEmpty();
     }
 
     /**
-     * Checks if the specified element is inside a thread or executor service by going up the PSI tree.
+     * Checks if there is a call path from one method to another, see {@link #canReach(PsiMethod)}.
      *
-     * @param element the element to check
-     * @return true if the element is inside a thread or executor service, false otherwise
-     */
-    private boolean isInsideThreadOrExecutor(PsiElement element) {
-        PsiElement parent = element;
-        while (parent != null) {
-            if (parent instanceof PsiNewExpression newExpr) {
-                PsiJavaCodeReferenceElement ref = newExpr.getClassReference();
-                if (ref != null && "java.lang.Thread".equals(ref.getQualifiedName())) {
-                    return true;
-                }
-                if (isExecutorService(Objects.requireNonNull(ref).getQualifiedName())) {
-                    return true;
-                }
+     * @param start the method the call path starts at
+     * @param target the method the call path ends at
+     * @return true if the target is reachable from the start method, false otherwise
+     */
+    public static boolean canReach(PsiMethod start, PsiMethod target) {
+        return new PathFinder(start).canReach(target);
+    }
+
+    /**
+     * Finds up to k shortest call paths from the start method to the specified target with Yen's algorithm,
+     * using a breadth-first search over callers for every spur path. Paths are returned in increasing length.
+     *
+     * @param target the method to find call paths to
+     * @param k the maximum number of paths to find
+     * @return a list of the shortest call paths, each without the target method
+     */
+    public List<List<String>> findShortestCallPaths(PsiMethod target, int k) {
+        if (start == null || target == null || k <= 0) {
+            return List.of();
+        }
+        return enumerate(() -> {
+            MethodIds ids = createMethodIds();
+            List<List<String>> paths = new ArrayList<>();
+            for (int[] path : CallGraphEngine.findShortestPaths(ids, ids.idOf(start), ids.idOf(target), k)) {
+                stats.pathFound();
+                paths.add(pathNames(ids, path));
             }
-            if (parent instanceof PsiMethodCallExpression methodCall) {
-                String methodName = methodCall.getMethodExpression().getReferenceName();
-                if (isExecutorServiceMethod(methodName)) {
-                    return true;
+            return paths;
+        });
+    }
+
+    /**
+     * Returns the callers of the specified method. Callers are looked up once per project state
+     * and reused by later branches and queries: from the project call graph when it is up to date,
+     * which the IDE builds when the project opens, otherwise by resolving the call sites of the method.
+     *
+     * @param method the method to get callers of
+     * @return the list of callers of the method
+     */
+    private List<PsiMethod> getCallers(PsiMethod method) {
+        GlobalSearchScope scope = getCallerScope(method);
+        boolean[] resolved = {false};
+        List<PsiMethod> callers = CallerCache.getInstance(method.getProject()).getCallers(method, scope, key -> {
+            resolved[0] = true;
+            List<PsiMethod> indexed = stats.time(QueryStats.Phase.RESOLVE,
+                    () -> ProjectCallGraph.getInstance(key.getProject()).getCallers(key, scope));
+            return indexed != null ? indexed : resolveCallers(key, scope, stats);
+        });
+        stats.callersLookedUp(!resolved[0]);
+        return callers;
+    }
+
+    /**
+     * Returns the scope callers are searched in, see {@link SearchScopes#callerScope}.
+     *
+     * @param context an element of the project, used when no start method is set
+     * @return the scope of caller searches
+     */
+    private GlobalSearchScope getCallerScope(PsiElement context) {
+        GlobalSearchScope scope = callerScope;
+        if (scope == null) {
+            scope = SearchScopes.callerScope(context.getProject(), start);
+            callerScope = scope;
+        }
+        return scope;
+    }
+
+    private Set<PsiMethod> getCallees(PsiMethod method) {
+        return stats.time(QueryStats.Phase.RESOLVE,
+                () -> CalleeResolver.resolveCallees(method, call -> isDirectCall(method, call)));
+    }
+
+    /**
+     * Checks if the specified method can be reached forward from the start method.
+     * Callers outside the forward cone of the start method can never lead to it, so the backward search skips them.
+     * The cone is computed on first use, shared by queries running concurrently, and recomputed once the Java code changes.
+     *
+     * @param method the method to check
+     * @return true if the method is reachable from the start method or no start method is set, false otherwise
+     */
+    private boolean isReachableFromStart(PsiMethod method) {
+        PsiMethod start = this.start;
+        if (start == null) {
+            return true;
+        }
+        long modificationCount = PsiModificationTracker.getInstance(start.getProject())
+                .forLanguage(JavaLanguage.INSTANCE).getModificationCount();
+        Reachable reachable = reachableFromStart;
+        if (reachable == null || reachable.modificationCount() != modificationCount) {
+            synchronized (this) { // concurrent prefetches compute the cone once
+                reachable = reachableFromStart;
+                if (reachable == null || reachable.modificationCount() != modificationCount) {
+                    reachable = new Reachable(stats.time(QueryStats.Phase.RESOLVE,
+                            () -> CalleeResolver.collectReachable(start)), modificationCount);
+                    reachableFromStart = reachable;
                 }
             }
-            parent = parent.getParent();
         }
-        return false;
+        return reachable.methods().contains(method);
     }
 
     /**
-     * Checks if the specified class name is an executor service.
+     * Resolves the methods calling the specified method by looking for references to it.
+     * References inside a thread, an executor task or another asynchronous boundary are skipped, as such calls
+     * do not belong to the call path. A method calling the method several times is its caller once, as in the graph.
      *
-     * @param className the class name to check
-     * @return true if the class name is an executor service, false otherwise
+     * @param method the method to find callers of
+     * @param scope the scope to search callers in
+     * @param stats the statistics of the query
+     * @return the list of callers of the method
      */
-    private boolean isExecutorService(String className) {
-        return "java.util.concurrent.ExecutorService".equals(className) ||
-                "java.util.concurrent.Executors".equals(className);
+    private static List<PsiMethod> resolveCallers(PsiMethod method, GlobalSearchScope scope, QueryStats stats) {
+        Set<PsiMethod> callers = new LinkedHashSet<>();
+        processReferences(method, scope, stats, element -> {
+            if (isInsideThreadOrExecutor(element)) { // if the method is inside a new thread, skip it
+                return true;
+            }
+            PsiMethod caller = PsiTreeUtil.getParentOfType(element, PsiMethod.class);
+            if (caller != null) {
+                callers.add(caller);
+            }
+            return true;
+        });
+        return new ArrayList<>(callers);
     }
 
     /**
-     * Checks if the specified method name is an executor service method.
+     * Checks if the start method calls the specified method directly. Only the calls in the start method are resolved,
+     * so the most common short path is confirmed without searching the call sites of the method.
      *
-     * @param methodName the method name to check
-     * @return true if the method name is an executor service method, false otherwise
+     * @param method the method to check
+     * @return true if the start method calls the method directly, false otherwise
+     */
+    private boolean isCalledFromStart(PsiMethod method) {
+        return getCallees(start).contains(method);
+    }
+
+    /**
+     * Hands the elements referencing the specified method to the processor one at a time. Call sites of regular methods
+     * come from {@link CallSiteIndex}, constructors are looked up with a reference search as they are invoked through
+     * new expressions. Both searches resolve a reference only when the processor asked for the next one, and both skip
+     * compiled files that do not reference the method according to the compiler's backward-reference index.
+     *
+     * @param method the method to find references to
+     * @param scope the scope to search references in
+     * @param stats the statistics of the query
+     * @param processor the processor of referencing elements, returning false to stop the search
+     * @return false if the processor stopped the search, true otherwise
+     */
+    private static boolean processReferences(PsiMethod method, GlobalSearchScope scope, QueryStats stats,
+                                             Processor<? super PsiElement> processor) {
+        if (!method.isConstructor()) {
+            GlobalSearchScope narrowed =
+                    stats.time(QueryStats.Phase.REFERENCE_SEARCH, () -> CompilerReferences.narrow(method, scope));
+            return CallSiteIndex.processCallSites(method, narrowed, stats, processor);
+        }
+        // the reference search narrows its scope with the compiler index by itself and resolves while it searches
+        Processor<PsiReference> references = reference -> {
+            stats.referenceScanned();
+            return processor.process(reference.getElement());
+        };
+        return stats.time(QueryStats.Phase.REFERENCE_SEARCH, () -> ReferencesSearch.search(method, scope).forEach(references));
+    }
+
+    /**
+     * Checks if the specified call made in the body of a method is attributed to that method by the backward search.
+     * Calls inside anonymous and local classes belong to their own methods, calls started in a new thread or executor
+     * service do not belong to any call path.
+     *
+     * @param method the method whose body contains the call
+     * @param call the call element
+     * @return true if the call is a call edge of the method, false otherwise
+     */
+    static boolean isDirectCall(PsiMethod method, PsiElement call) {
+        return PsiTreeUtil.getParentOfType(call, PsiMethod.class) == method && !isInsideThreadOrExecutor(call);
+    }
+
+    /**
+     * Checks if the specified element is inside a thread, an executor task or another asynchronous boundary.
+     *
+     * @param element the element to check
+     * @return true if the element runs asynchronously to the code around it, false otherwise
+     * @see AsyncBoundaries
      */
-    private boolean isExecutorServiceMethod(String methodName) {
-        return "execute".equals(methodName) || "submit".equals(methodName) ||
-                "invokeAll".equals(methodName) || "invokeAny".equals(methodName);
+    static boolean isInsideThreadOrExecutor(PsiElement element) {
+        return AsyncBoundaries.contains(element);
     }
-}
\ No newline at end of file
+}
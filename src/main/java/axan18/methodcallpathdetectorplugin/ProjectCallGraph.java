@@ -0,0 +1,275 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
+import org.jetbrains.concurrency.Promise;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Call graph of all Java methods in the project with a reachability index over it.
+ * The graph is built once in the background. Afterwards only the rows of changed files are patched, in batches:
+ * changes are collected until the code has been quiet for a moment, so a refactoring or a VCS update costs one patch.
+ * The extracted calls are saved in the system directory after the first build and when the project closes,
+ * so after a restart only the files changed meanwhile are extracted again.
+ */
+@Service(Service.Level.PROJECT)
+public final class ProjectCallGraph implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ProjectCallGraph.class);
+    private static final int UPDATE_DELAY_MS = 300;
+    // a single thread, so building the graph never takes more than one pool thread from the IDE
+    private static final Executor UPDATE_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Call Graph Update", 1);
+
+    private final Project project;
+    private final PsiCallGraphBuilder builder; // guarded by itself
+    private final Set<VirtualFile> changedFiles = ConcurrentHashMap.newKeySet(); // not yet patched into the graph
+    private final Alarm updateAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    private Promise<?> scheduledUpdate; // guarded by this
+    private final Path storagePath;
+    private volatile Snapshot snapshot;
+    private Snapshot savedSnapshot; // guarded by the builder
+
+    /**
+     * A built graph with its reachability index. The index of a built graph is computed on first use; the index of
+     * a patched graph is patched from the index of the previous graph right away when that one was already computed.
+     */
+    static final class Snapshot {
+        private final PsiCallGraphBuilder.Result graph;
+        private final List<String> rules; // the asynchronous boundary rules the calls were extracted with
+        private volatile ReachabilityIndex reachability;
+
+        Snapshot(PsiCallGraphBuilder.Result graph, List<String> rules) {
+            this.graph = graph;
+            this.rules = rules;
+        }
+
+        /**
+         * @param graph the graph patched from the graph of the previous snapshot
+         * @param previous the snapshot the graph was patched from
+         */
+        Snapshot(PsiCallGraphBuilder.Result graph, Snapshot previous) {
+            this(graph, previous.rules);
+            ReachabilityIndex previousIndex = previous.reachability;
+            reachability = previousIndex != null ? previousIndex.patch(graph.graph()) : null;
+        }
+
+        PsiCallGraphBuilder.Result graph() {
+            return graph;
+        }
+
+        ReachabilityIndex reachability() {
+            ReachabilityIndex index = reachability;
+            if (index == null) {
+                synchronized (this) {
+                    index = reachability;
+                    if (index == null) {
+                        index = new ReachabilityIndex(graph.graph());
+                        reachability = index;
+                    }
+                }
+            }
+            return index;
+        }
+    }
+
+    public ProjectCallGraph(@NotNull Project project) {
+        this.project = project;
+        this.builder = new PsiCallGraphBuilder(project);
+        this.storagePath = Path.of(PathManager.getSystemPath(), "callPathGraph", project.getLocationHash() + ".bin");
+        CallGraphChangeTracker.getInstance(project).addListener(this::fileChanged, this);
+    }
+
+    public static ProjectCallGraph getInstance(@NotNull Project project) {
+        return project.getService(ProjectCallGraph.class);
+    }
+
+    /**
+     * Checks if there is a call path from one method to another without traversing the graph.
+     * If the graph is not built yet, or changes are waiting to be patched into it, no answer is given;
+     * the graph is then built in the background.
+     *
+     * @param start the method the call path starts at
+     * @param target the method the call path ends at
+     * @return whether the target is reachable from the start method, or null if the graph is not up to date
+     */
+    public @Nullable Boolean canReach(@NotNull PsiMethod start, @NotNull PsiMethod target) {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot == null || !snapshot.rules.equals(CallPathSettings.getInstance(project).getAsyncBoundaryRules())) {
+            scheduleUpdate();
+            return null;
+        }
+        if (!changedFiles.isEmpty()) {
+            return null; // the pending patch is already scheduled
+        }
+        if (start.equals(target)) {
+            return true;
+        }
+        int from = snapshot.graph.idOf(start);
+        int to = snapshot.graph.idOf(target);
+        return from >= 0 && to >= 0 && snapshot.reachability().canReach(from, to);
+    }
+
+    /**
+     * Returns the callers of a method from the graph, so they are known without searching and resolving the call sites
+     * of the method. Callers are looked up by their keys in the scope, which makes them the same methods a call site
+     * search in the scope would find. If the graph is not up to date, no answer is given; an update is scheduled then.
+     * Must be called in a read action.
+     *
+     * @param method the method to get callers of
+     * @param scope the scope the callers must be declared in
+     * @return the callers of the method, or null if the graph is not up to date
+     */
+    public @Nullable List<PsiMethod> getCallers(@NotNull PsiMethod method, @NotNull GlobalSearchScope scope) {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot == null || !snapshot.rules.equals(CallPathSettings.getInstance(project).getAsyncBoundaryRules())) {
+            scheduleUpdate();
+            return null;
+        }
+        if (!changedFiles.isEmpty()) {
+            return null; // the pending patch is already scheduled
+        }
+        int id = snapshot.graph.idOf(method);
+        if (id < 0) {
+            return List.of(); // every method called from the project has an id
+        }
+        CsrCallGraph graph = snapshot.graph.graph();
+        List<PsiMethod> callers = new ArrayList<>(graph.callerCount(id));
+        for (int i = 0; i < graph.callerCount(id); i++) {
+            callers.addAll(MethodKeys.findMethods(project, snapshot.graph.keys()[graph.caller(id, i)], scope));
+        }
+        return callers;
+    }
+
+    /**
+     * Checks if the graph reflects the current Java code of the project.
+     *
+     * @return true if the graph is up to date, false otherwise
+     */
+    public boolean isUpToDate() {
+        Snapshot snapshot = this.snapshot;
+        return snapshot != null && changedFiles.isEmpty()
+                && snapshot.rules.equals(CallPathSettings.getInstance(project).getAsyncBoundaryRules());
+    }
+
+    /**
+     * Brings the graph up to date and returns it, so many questions can be answered from the same graph.
+     * Must be called in a read action.
+     *
+     * @return the up-to-date graph with its reachability index
+     */
+    Snapshot getUpToDateSnapshot() {
+        if (!isUpToDate()) {
+            update();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Schedules an update of the graph in a non-blocking read action, unless one is already scheduled.
+     * The read action gives way to write actions and is restarted after them, so the update never blocks typing.
+     *
+     * @return the scheduled update, processed once the graph is up to date or the update is cancelled
+     */
+    public synchronized @NotNull Promise<?> scheduleUpdate() {
+        Promise<?> update = scheduledUpdate;
+        if (update == null) {
+            CancellablePromise<?> submitted = ReadAction.nonBlocking(() -> {
+                        update();
+                        return null;
+                    })
+                    .inSmartMode(project)
+                    .expireWith(this)
+                    .submit(UPDATE_EXECUTOR);
+            scheduledUpdate = submitted;
+            submitted.onProcessed(ignored -> updateFinished(submitted));
+            update = submitted;
+        }
+        return update;
+    }
+
+    private synchronized void updateFinished(Promise<?> update) {
+        if (scheduledUpdate == update) {
+            scheduledUpdate = null;
+        }
+    }
+
+    /**
+     * Brings the graph up to date with the code: builds it on the first call, starting from the calls saved by the last
+     * session, and patches the changed files afterwards. A change of the asynchronous boundary rules changes the calls
+     * of every file, so the graph is built again. Must be called in a read action.
+     */
+    void update() {
+        Snapshot previous;
+        boolean built;
+        synchronized (builder) {
+            previous = snapshot;
+            List<String> rules = List.copyOf(CallPathSettings.getInstance(project).getAsyncBoundaryRules());
+            List<VirtualFile> changed = new ArrayList<>(changedFiles);
+            built = previous == null || !previous.rules.equals(rules);
+            PsiCallGraphBuilder.Result graph;
+            if (built) {
+                builder.clear();
+                builder.load(storagePath, rules.hashCode());
+                graph = builder.build();
+            } else {
+                graph = builder.update(previous.graph, changed);
+            }
+            snapshot = built ? new Snapshot(graph, rules) : new Snapshot(graph, previous);
+            changedFiles.removeAll(changed); // changes come in write actions, so none can arrive while this runs
+        }
+        if (built) {
+            UPDATE_EXECUTOR.execute(this::save); // not in the read action
+        }
+    }
+
+    /**
+     * Saves the extracted calls, unless they did not change since they were saved last.
+     */
+    private void save() {
+        synchronized (builder) {
+            Snapshot current = snapshot;
+            if (current == null || current == savedSnapshot) {
+                return;
+            }
+            try {
+                builder.save(storagePath, current.rules.hashCode());
+                savedSnapshot = current;
+            } catch (IOException e) {
+                LOG.warn("Cannot save the call graph to " + storagePath, e);
+            }
+        }
+    }
+
+    private void fileChanged(VirtualFile file) {
+        if (snapshot == null) {
+            return; // the first build reads every file anyway
+        }
+        changedFiles.add(file);
+        updateAlarm.cancelAllRequests();
+        updateAlarm.addRequest(this::scheduleUpdate, UPDATE_DELAY_MS);
+    }
+
+    @Override
+    public void dispose() {
+        save();
+    }
+}
@@ -0,0 +1,314 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.*;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the {@link CsrCallGraph} of all Java methods of a project from PSI. Calls are extracted and kept per file,
+ * so a later build extracts again only the changed files. Method ids are never reused: a method removed from the code
+ * stays in the graph without calls, which lets a changed file patch its rows without renumbering the graph.
+ * The extracted calls can be saved and loaded again, so a restarted IDE does not extract unchanged files.
+ * Not thread-safe.
+ */
+final class PsiCallGraphBuilder {
+    private static final int[] NO_CALLS = new int[0];
+    private static final long LOADED = -1; // the stamp of calls loaded from disk, checked against the file on disk
+    private static final long UNSAVED = -1; // the time stamp of calls extracted from an unsaved document
+
+    private final Project project;
+    private final Map<VirtualFile, FileCalls> files = new HashMap<>();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>(); // read by queries while the next graph is built
+    private final List<String> keys = new ArrayList<>(); // by id
+    private int extractedFileCount;
+
+    /**
+     * Calls extracted from a single file.
+     *
+     * @param stamp the modification stamp of the file when the calls were extracted, or LOADED
+     * @param timeStamp the time stamp of the file on disk when the calls were extracted, or UNSAVED
+     * @param length the length of the file on disk when the calls were extracted
+     * @param methods the ids of the methods declared in the file, including methods of nested classes
+     * @param callees the ids of the callees of every method, in the order of the methods
+     */
+    private record FileCalls(long stamp, long timeStamp, long length, int[] methods, int[][] callees) {
+        FileCalls withStamp(long stamp) {
+            return new FileCalls(stamp, timeStamp, length, methods, callees);
+        }
+    }
+
+    /**
+     * A built call graph with the keys of its methods.
+     *
+     * @param ids the id of every method key, shared by all graphs of the builder
+     * @param keys the key of every method of the graph, by id
+     * @param graph the call graph over the ids
+     */
+    record Result(Map<String, Integer> ids, String[] keys, CsrCallGraph graph) {
+        /**
+         * @param method the method to look up
+         * @return the id of the method in the graph, or -1 if the graph does not know it
+         */
+        int idOf(PsiMethod method) {
+            Integer id = ids.get(MethodKeys.keyOf(method));
+            return id != null && id < graph.nodeCount() ? id : -1; // ids interned by a later build are not in this graph
+        }
+    }
+
+    PsiCallGraphBuilder(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Builds the graph of all Java files of the project. Calls are extracted again only for files whose modification
+     * stamp changed since they were extracted, or, for loaded calls, whose time stamp or length on disk changed.
+     * Must be called in a read action.
+     *
+     * @return the call graph of the project
+     */
+    Result build() {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        Set<VirtualFile> present = new HashSet<>();
+        extractedFileCount = 0;
+        for (VirtualFile file : FileTypeIndex.getFiles(JavaFileType.INSTANCE, GlobalSearchScope.projectScope(project))) {
+            ProgressManager.checkCanceled();
+            PsiFile psiFile = psiManager.findFile(file);
+            if (psiFile == null) {
+                continue;
+            }
+            present.add(file);
+            FileCalls extracted = files.get(file);
+            if (extracted == null || !isUpToDate(extracted, file, psiFile)) {
+                files.put(file, extractCalls(file, psiFile));
+            } else if (extracted.stamp() == LOADED) {
+                files.put(file, extracted.withStamp(psiFile.getModificationStamp()));
+            }
+        }
+        files.keySet().retainAll(present);
+        CsrCallGraph.Builder graph = new CsrCallGraph.Builder();
+        for (FileCalls fileCalls : files.values()) {
+            for (int i = 0; i < fileCalls.methods().length; i++) {
+                for (int callee : fileCalls.callees()[i]) {
+                    graph.addCall(fileCalls.methods()[i], callee);
+                }
+            }
+        }
+        return new Result(ids, keys.toArray(new String[0]), graph.build(keys.size()));
+    }
+
+    /**
+     * Patches a graph built earlier with the calls of the changed files: the callee rows of the methods declared
+     * in these files are replaced, all other rows are copied. Must be called in a read action.
+     *
+     * @param previous the graph built before the files changed
+     * @param changedFiles the changed files, including deleted ones
+     * @return the patched call graph
+     */
+    Result update(Result previous, Collection<VirtualFile> changedFiles) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        int[][] rows = new int[keys.size()][]; // the new callees by method, grown as new methods are interned
+        for (VirtualFile file : changedFiles) { // old calls go first, a method moved to another changed file keeps its new ones
+            FileCalls old = files.get(file);
+            if (old != null) {
+                for (int method : old.methods()) {
+                    rows[method] = NO_CALLS;
+                }
+            }
+        }
+        Map<VirtualFile, FileCalls> extractedFiles = new HashMap<>();
+        for (VirtualFile file : changedFiles) {
+            ProgressManager.checkCanceled();
+            PsiFile psiFile = file.isValid() && projectScope.contains(file) ? psiManager.findFile(file) : null;
+            if (!(psiFile instanceof PsiJavaFile)) {
+                continue; // deleted or moved out of the project
+            }
+            FileCalls extracted = extractCalls(file, psiFile);
+            extractedFiles.put(file, extracted);
+            if (rows.length < keys.size()) {
+                rows = Arrays.copyOf(rows, Math.max(keys.size(), rows.length * 2));
+            }
+            for (int i = 0; i < extracted.methods().length; i++) {
+                rows[extracted.methods()[i]] = extracted.callees()[i];
+            }
+        }
+        files.keySet().removeAll(changedFiles); // not earlier, a cancelled update is restarted from the same state
+        files.putAll(extractedFiles);
+        return new Result(ids, keys.toArray(new String[0]), previous.graph().withCallees(keys.size(), rows));
+    }
+
+    /**
+     * Loads calls saved by an earlier session. They are used by the next {@link #build()} for the files whose
+     * time stamp and length on disk did not change since. Does nothing if calls were already extracted, or if they were
+     * saved with other asynchronous boundary rules. Must be called in a read action.
+     *
+     * @param path the file the calls were saved to
+     * @param rulesHash the hash of the current asynchronous boundary rules
+     * @return true if calls were loaded, false otherwise
+     */
+    boolean load(Path path, int rulesHash) {
+        if (!files.isEmpty()) {
+            return false;
+        }
+        CallGraphStorage.Content content = CallGraphStorage.read(path);
+        if (content == null || content.rulesHash() != rulesHash) {
+            return false;
+        }
+        int[] storedIds = new int[content.keys().length];
+        for (int i = 0; i < storedIds.length; i++) {
+            storedIds[i] = intern(content.keys()[i]);
+        }
+        VirtualFileManager fileManager = VirtualFileManager.getInstance();
+        for (CallGraphStorage.StoredFile stored : content.files()) {
+            VirtualFile file = fileManager.findFileByUrl(stored.url());
+            if (file == null) {
+                continue; // deleted meanwhile
+            }
+            int[] methods = new int[stored.methods().length];
+            int[][] callees = new int[methods.length][];
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = storedIds[stored.methods()[i]];
+                callees[i] = new int[stored.callees()[i].length];
+                for (int c = 0; c < callees[i].length; c++) {
+                    callees[i][c] = storedIds[stored.callees()[i][c]];
+                }
+            }
+            files.put(file, new FileCalls(LOADED, stored.timeStamp(), stored.length(), methods, callees));
+        }
+        return true;
+    }
+
+    /**
+     * Saves the calls of every file that did not change on disk since its calls were extracted.
+     * Only the keys of these calls are saved, so keys of removed methods do not pile up across sessions.
+     *
+     * @param path the file to save the calls to
+     * @param rulesHash the hash of the asynchronous boundary rules the calls were extracted with
+     * @throws IOException if the file cannot be written
+     */
+    void save(Path path, int rulesHash) throws IOException {
+        int[] storedIds = new int[keys.size()];
+        Arrays.fill(storedIds, -1);
+        List<String> storedKeys = new ArrayList<>();
+        List<CallGraphStorage.StoredFile> storedFiles = new ArrayList<>();
+        for (Map.Entry<VirtualFile, FileCalls> entry : files.entrySet()) {
+            VirtualFile file = entry.getKey();
+            FileCalls calls = entry.getValue();
+            if (!file.isValid() || calls.timeStamp() != file.getTimeStamp() || calls.length() != file.getLength()) {
+                continue; // extracted from an unsaved document, or changed on disk since
+            }
+            int[] methods = new int[calls.methods().length];
+            int[][] callees = new int[methods.length][];
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = storedId(calls.methods()[i], storedIds, storedKeys);
+                callees[i] = new int[calls.callees()[i].length];
+                for (int c = 0; c < callees[i].length; c++) {
+                    callees[i][c] = storedId(calls.callees()[i][c], storedIds, storedKeys);
+                }
+            }
+            storedFiles.add(new CallGraphStorage.StoredFile(file.getUrl(), calls.timeStamp(), calls.length(), methods, callees));
+        }
+        CallGraphStorage.write(path,
+                new CallGraphStorage.Content(rulesHash, storedKeys.toArray(new String[0]), storedFiles));
+    }
+
+    /**
+     * Forgets the extracted calls, so the next {@link #build()} extracts every file again. Method ids are kept.
+     */
+    void clear() {
+        files.clear();
+    }
+
+    /**
+     * @return the number of files whose calls the last {@link #build()} extracted from PSI
+     */
+    int getExtractedFileCount() {
+        return extractedFileCount;
+    }
+
+    private static boolean isUpToDate(FileCalls calls, VirtualFile file, PsiFile psiFile) {
+        if (calls.stamp() != LOADED) {
+            return calls.stamp() == psiFile.getModificationStamp();
+        }
+        return calls.timeStamp() == file.getTimeStamp() && calls.length() == file.getLength()
+                && !FileDocumentManager.getInstance().isFileModified(file);
+    }
+
+    /**
+     * Extracts the callees of every method declared in the specified file, including methods of nested classes.
+     *
+     * @param file the file to extract the calls from
+     * @param psiFile the PSI of the file
+     * @return the extracted calls
+     */
+    private FileCalls extractCalls(VirtualFile file, PsiFile psiFile) {
+        extractedFileCount++;
+        long timeStamp = FileDocumentManager.getInstance().isFileModified(file) ? UNSAVED : file.getTimeStamp();
+        IntArrayList methods = new IntArrayList();
+        List<int[]> callees = new ArrayList<>();
+        psiFile.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethod(@NotNull PsiMethod method) {
+                super.visitMethod(method);
+                Set<PsiMethod> resolved = CalleeResolver.resolveCallees(method, call -> PathFinder.isDirectCall(method, call));
+                int[] methodCallees = new int[resolved.size()];
+                int count = 0;
+                for (PsiMethod callee : resolved) {
+                    methodCallees[count++] = intern(MethodKeys.keyOf(callee));
+                }
+                methods.add(intern(MethodKeys.keyOf(method)));
+                callees.add(distinct(methodCallees));
+            }
+        });
+        return new FileCalls(psiFile.getModificationStamp(), timeStamp, file.getLength(),
+                methods.toIntArray(), callees.toArray(new int[0][]));
+    }
+
+    /**
+     * Sorts the specified ids and removes duplicates, as different PSI methods can have the same key.
+     *
+     * @param ids the ids, sorted in place
+     * @return the distinct ids in ascending order
+     */
+    private static int[] distinct(int[] ids) {
+        Arrays.sort(ids);
+        int kept = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (kept == 0 || ids[kept - 1] != ids[i]) {
+                ids[kept++] = ids[i];
+            }
+        }
+        return kept == ids.length ? ids : Arrays.copyOf(ids, kept);
+    }
+
+    private int intern(String key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = keys.size();
+            keys.add(key);
+            ids.put(key, id);
+        }
+        return id;
+    }
+
+    private int storedId(int id, int[] storedIds, List<String> storedKeys) {
+        if (storedIds[id] < 0) {
+            storedIds[id] = storedKeys.size();
+            storedKeys.add(keys.get(id));
+        }
+        return storedIds[id];
+    }
+}
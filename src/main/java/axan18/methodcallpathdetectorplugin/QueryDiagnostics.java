@@ -0,0 +1,121 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Collects the statistics of finished queries: every query is written to the IDE log, the latest ones are kept for
+ * the diagnostics tool window, and, when enabled in the settings, they are appended as JSON lines to a file
+ * in the IDE log directory.
+ */
+@Service(Service.Level.PROJECT)
+public final class QueryDiagnostics implements Disposable {
+    static final String DUMP_FILE_NAME = "callPathQueries.jsonl";
+    private static final Logger LOG = Logger.getInstance(QueryDiagnostics.class);
+    private static final int MAX_QUERIES = 100;
+    private static final ExecutorService DUMP_EXECUTOR = // keeps the dumped lines in the order of the queries
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Call Path Query Dump", 1);
+
+    private final Project project;
+    private final Deque<QueryStats> queries = new ArrayDeque<>(); // the latest first
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public QueryDiagnostics(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static QueryDiagnostics getInstance(@NotNull Project project) {
+        return project.getService(QueryDiagnostics.class);
+    }
+
+    /**
+     * Records a finished query.
+     *
+     * @param stats the statistics of the query
+     */
+    public void record(@NotNull QueryStats stats) {
+        LOG.info("Call path query " + stats + "; caller cache: " + CallerCache.getInstance(project).getStats());
+        synchronized (queries) {
+            queries.addFirst(stats);
+            if (queries.size() > MAX_QUERIES) {
+                queries.removeLast();
+            }
+        }
+        if (CallPathSettings.getInstance(project).isDumpQueryStats()) {
+            DUMP_EXECUTOR.execute(() -> dump(stats));
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return the recorded queries, the latest first
+     */
+    public @NotNull List<QueryStats> getQueries() {
+        synchronized (queries) {
+            return new ArrayList<>(queries);
+        }
+    }
+
+    public void clear() {
+        synchronized (queries) {
+            queries.clear();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Registers a listener called, on any thread, whenever the recorded queries change.
+     *
+     * @param listener the listener
+     * @param parentDisposable the disposable removing the listener
+     */
+    public void addListener(@NotNull Runnable listener, @NotNull Disposable parentDisposable) {
+        listeners.add(listener);
+        Disposer.register(parentDisposable, () -> listeners.remove(listener));
+    }
+
+    /**
+     * @return the file the queries are appended to when the dump is enabled
+     */
+    static Path getDumpFile() {
+        return Path.of(PathManager.getLogPath(), DUMP_FILE_NAME);
+    }
+
+    private static void dump(QueryStats stats) {
+        Path file = getDumpFile();
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, stats.toJson() + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.warn("Cannot dump call path query statistics to " + file, e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        listeners.clear();
+    }
+}
@@ -0,0 +1,131 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Tool window listing the statistics of the latest call path queries, one row per query, with the time of every phase
+ * and the counters telling how much of the project a query touched, above them the state of the caller cache.
+ */
+public final class QueryDiagnosticsToolWindowFactory implements ToolWindowFactory, DumbAware {
+    private static final String[] COLUMNS = {"Started", "Query", "Total ms", "Target lookup ms", "Reference search ms",
+            "Resolve ms", "Enumeration ms", "Methods expanded", "References scanned", "Cache hits", "Cache misses",
+            "Peak frontier", "Paths found"};
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        QueryDiagnostics diagnostics = QueryDiagnostics.getInstance(project);
+        QueryTableModel model = new QueryTableModel(diagnostics.getQueries());
+        JLabel cacheStats = new JLabel(cacheStatsText(project));
+        diagnostics.addListener(() -> ApplicationManager.getApplication().invokeLater(() -> {
+            model.setQueries(diagnostics.getQueries());
+            cacheStats.setText(cacheStatsText(project));
+        }), toolWindow.getDisposable());
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+
+        JButton copy = new JButton("Copy as JSON");
+        copy.setToolTipText("Copies the selected queries, or all of them when none is selected, one JSON object per line");
+        copy.addActionListener(e -> {
+            int[] rows = table.getSelectedRows();
+            StringJoiner json = new StringJoiner("\n");
+            if (rows.length == 0) {
+                model.queries.forEach(query -> json.add(query.toJson()));
+            }
+            for (int row : rows) {
+                json.add(model.queries.get(table.convertRowIndexToModel(row)).toJson());
+            }
+            CopyPasteManager.getInstance().setContents(new StringSelection(json.toString()));
+        });
+        JButton clear = new JButton("Clear");
+        clear.addActionListener(e -> diagnostics.clear());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(copy);
+        buttons.add(clear);
+        buttons.add(cacheStats);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(buttons, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        Content content = ContentFactory.getInstance().createContent(panel, "", false);
+        toolWindow.getContentManager().addContent(content);
+    }
+
+    private static String cacheStatsText(Project project) {
+        return "Caller cache: " + CallerCache.getInstance(project).getStats();
+    }
+
+    /**
+     * Rows of the table, one per query, the latest first.
+     */
+    private static final class QueryTableModel extends AbstractTableModel {
+        private List<QueryStats> queries;
+
+        QueryTableModel(List<QueryStats> queries) {
+            this.queries = queries;
+        }
+
+        void setQueries(List<QueryStats> queries) {
+            this.queries = queries;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return queries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column < 2 ? String.class : column < 7 ? Double.class : Long.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            QueryStats query = queries.get(row);
+            return switch (column) {
+                case 0 -> new SimpleDateFormat("HH:mm:ss", Locale.ROOT).format(new Date(query.getStartedAt()));
+                case 1 -> query.getLabel();
+                case 2 -> millis(query.getTotalNanos());
+                case 3, 4, 5, 6 -> millis(query.getNanos(QueryStats.Phase.values()[column - 3]));
+                case 7 -> query.getMethodsExpanded();
+                case 8 -> query.getReferencesScanned();
+                case 9 -> query.getCacheHits();
+                case 10 -> query.getCacheMisses();
+                case 11 -> (long) query.getPeakFrontier();
+                default -> query.getPathsFound();
+            };
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1e4) / 100.0; // two decimals
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package axan18.methodcallpathdetectorplugin;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Counters and timers of a single call path query, telling where its time went. Callers of several targets are
+ * resolved concurrently, so all counters are thread-safe and phase times are summed over the threads of the query.
+ * Phases do not overlap: time spent resolving callers during the path enumeration is counted as reference search
+ * and resolve, not as enumeration.
+ */
+public final class QueryStats {
+    /**
+     * The phases of a query.
+     */
+    public enum Phase {
+        /** Looking up the methods with the searched name. */
+        TARGET_LOOKUP("Target lookup"),
+        /** Scanning the call-site index or the reference search for candidate call sites. */
+        REFERENCE_SEARCH("Reference search"),
+        /** Resolving candidate call sites to check they call the method. */
+        RESOLVE("Resolve"),
+        /** Walking the call graph, without the callers resolved on the way. */
+        ENUMERATION("Enumeration");
+
+        private final String presentableName;
+
+        Phase(String presentableName) {
+            this.presentableName = presentableName;
+        }
+
+        @Override
+        public String toString() {
+            return presentableName;
+        }
+    }
+
+    private final String label;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong methodsExpanded = new AtomicLong();
+    private final AtomicLong referencesScanned = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong pathsFound = new AtomicLong();
+    private final AtomicInteger peakFrontier = new AtomicInteger();
+
+    /**
+     * @param label the description of the query, shown in the diagnostics
+     */
+    public QueryStats(@NotNull String label) {
+        this.label = label;
+    }
+
+    /**
+     * Runs the specified code and adds its wall time to the phase.
+     *
+     * @param phase the phase the code belongs to
+     * @param code the code to run
+     * @return the result of the code
+     */
+    public <T> T time(@NotNull Phase phase, @NotNull Supplier<T> code) {
+        long start = System.nanoTime();
+        try {
+            return code.get();
+        } finally {
+            addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    public void addTime(@NotNull Phase phase, long nanos) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    /**
+     * Records a method whose callers or callees a search asked for.
+     *
+     * @param frontier the number of methods discovered but not expanded yet when the method was expanded
+     */
+    public void methodExpanded(int frontier) {
+        methodsExpanded.incrementAndGet();
+        peakFrontier.accumulateAndGet(frontier, Math::max);
+    }
+
+    /**
+     * Records a candidate call site handed to resolve, or a reference found by a reference search.
+     */
+    public void referenceScanned() {
+        referencesScanned.incrementAndGet();
+    }
+
+    /**
+     * Records a caller lookup answered by the caller cache, or resolved because it missed the cache.
+     *
+     * @param hit true if the callers were cached
+     */
+    public void callersLookedUp(boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet();
+    }
+
+    public void pathFound() {
+        pathsFound.incrementAndGet();
+    }
+
+    public @NotNull String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the time the query started, in milliseconds since the epoch
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @param phase the phase
+     * @return the time spent in the phase, in nanoseconds
+     */
+    public long getNanos(@NotNull Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * @return the time spent in all phases, in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            total += getNanos(phase);
+        }
+        return total;
+    }
+
+    /**
+     * @return the time spent resolving callers, in reference searches and resolve, in nanoseconds
+     */
+    long getCallerResolutionNanos() {
+        return getNanos(Phase.REFERENCE_SEARCH) + getNanos(Phase.RESOLVE);
+    }
+
+    public long getMethodsExpanded() {
+        return methodsExpanded.get();
+    }
+
+    public long getReferencesScanned() {
+        return referencesScanned.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public long getPathsFound() {
+        return pathsFound.get();
+    }
+
+    /**
+     * @return the largest number of methods discovered but not expanded yet at once
+     */
+    public int getPeakFrontier() {
+        return peakFrontier.get();
+    }
+
+    /**
+     * @return the query as a single-line JSON object
+     */
+    public @NotNull String toJson() {
+        StringBuilder json = new StringBuilder("{\"query\":").append(Json.quote(label));
+        json.append(",\"startedAt\":").append(startedAt)
+                .append(",\"totalMs\":").append(millis(getTotalNanos()));
+        for (Phase phase : Phase.values()) {
+            json.append(",\"").append(jsonName(phase)).append("Ms\":").append(millis(getNanos(phase)));
+        }
+        return json.append(",\"methodsExpanded\":").append(getMethodsExpanded())
+                .append(",\"referencesScanned\":").append(getReferencesScanned())
+                .append(",\"cacheHits\":").append(getCacheHits())
+                .append(",\"cacheMisses\":").append(getCacheMisses())
+                .append(",\"peakFrontier\":").append(getPeakFrontier())
+                .append(",\"pathsFound\":").append(getPathsFound())
+                .append('}').toString();
+    }
+
+    private static String jsonName(Phase phase) {
+        StringBuilder name = new StringBuilder();
+        for (String word : phase.name().toLowerCase(Locale.ROOT).split("_")) {
+            name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+        return name.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(label).append(": ").append(millis(getTotalNanos())).append(" ms (");
+        for (Phase phase : Phase.values()) {
+            text.append(phase).append(' ').append(millis(getNanos(phase))).append(" ms, ");
+        }
+        return text.append(getMethodsExpanded()).append(" methods expanded, ")
+                .append(getReferencesScanned()).append(" references scanned, ")
+                .append(getCacheHits()).append(" cache hits, ")
+                .append(getCacheMisses()).append(" cache misses, peak frontier ")
+                .append(getPeakFrontier()).append(", ")
+                .append(getPathsFound()).append(" paths found)").toString();
+    }
+}
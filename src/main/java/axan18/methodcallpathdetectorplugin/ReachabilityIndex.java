@@ -0,0 +1,406 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.progress.ProgressManager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Answers reachability between nodes of a call graph from interval labels.
+ * The graph is condensed into strongly connected components, so the methods of a cycle share a single label.
+ * A depth-first search along callers, started from the components calling nothing, numbers the components
+ * in post-order, so the components the search reached through a component occupy one interval of numbers.
+ * The label of a component is the set of numbers of the components it can be reached from, kept as merged intervals:
+ * its own interval joined with the labels of its callers. On call graphs these labels stay a few intervals long.
+ * If they grow past a budget anyway, the labels are dropped and questions are answered by a bidirectional search
+ * over the graph instead.
+ * <p>
+ * A patched graph gets its index by {@link #patch(CallGraph)}, which relabels only the components reachable from
+ * a changed call, joining the labels of their callers in topological order, and shares every other label.
+ * Finding the changed calls compares the callee rows of both graphs, a linear scan of int arrays; the relabelling
+ * costs the size of the affected part of the graph. A patch merging or splitting components, or affecting a large
+ * part of the graph, is indexed from scratch instead, which costs linear time and up to the interval budget.
+ */
+final class ReachabilityIndex {
+    static final long DEFAULT_MAX_INTERVALS = 8_000_000; // 64 MB of interval bounds
+    private static final int MAX_PATCHED_SHARE = 4; // a patch affecting more than a quarter of the methods rebuilds
+
+    private final CallGraph graph;
+    private final long maxIntervals;
+    private final int[] componentOf; // component of every method
+    private final boolean ordered; // callers belong to lower components than their callees, as computed by Tarjan
+    private final int[] order; // distinct number of every component, a post-order one unless patched
+    private final int[][] labels; // by component: sorted disjoint intervals as start, end pairs; null over budget
+    private final long intervals; // of all labels together
+
+    /**
+     * @param graph the call graph to index
+     */
+    ReachabilityIndex(CallGraph graph) {
+        this(graph, DEFAULT_MAX_INTERVALS);
+    }
+
+    /**
+     * @param graph the call graph to index
+     * @param maxIntervals the number of intervals of all labels together above which no labels are kept
+     */
+    ReachabilityIndex(CallGraph graph, long maxIntervals) {
+        this.graph = graph;
+        this.maxIntervals = maxIntervals;
+        StronglyConnectedComponents components = new StronglyConnectedComponents(graph);
+        componentOf = new int[graph.nodeCount()];
+        for (int method = 0; method < componentOf.length; method++) {
+            componentOf[method] = components.componentOf(method);
+        }
+        ordered = true;
+        int[][] callers = components.condense(graph);
+        order = new int[components.count()];
+        int[] subtreeStart = new int[components.count()]; // the lowest number given in the search below a component
+        number(callers, subtreeStart);
+        labels = label(callers, subtreeStart, maxIntervals);
+        intervals = labels != null ? countIntervals(labels) : 0;
+    }
+
+    private ReachabilityIndex(CallGraph graph, long maxIntervals, int[] componentOf, boolean ordered, int[] order,
+                              int[][] labels, long intervals) {
+        this.graph = graph;
+        this.maxIntervals = maxIntervals;
+        this.componentOf = componentOf;
+        this.ordered = ordered;
+        this.order = order;
+        this.labels = labels;
+        this.intervals = intervals;
+    }
+
+    /**
+     * Numbers the components in post-order of a depth-first search along callers, started from every component
+     * calling nothing, which together reach every component.
+     */
+    private void number(int[][] callers, int[] subtreeStart) {
+        int count = callers.length;
+        boolean[] calls = new boolean[count];
+        for (int[] componentCallers : callers) {
+            for (int caller : componentCallers) {
+                calls[caller] = true;
+            }
+        }
+        boolean[] visited = new boolean[count];
+        int[] stack = new int[count]; // replaces recursion, so deep call chains cannot overflow the thread stack
+        int[] cursors = new int[count];
+        int next = 0;
+        for (int root = 0; root < count; root++) {
+            if (calls[root]) {
+                continue;
+            }
+            ProgressManager.checkCanceled();
+            int depth = 0;
+            stack[0] = root;
+            cursors[0] = 0;
+            visited[root] = true;
+            subtreeStart[root] = next;
+            while (depth >= 0) {
+                int component = stack[depth];
+                if (cursors[depth] < callers[component].length) {
+                    int caller = callers[component][cursors[depth]++];
+                    if (!visited[caller]) {
+                        visited[caller] = true;
+                        subtreeStart[caller] = next;
+                        stack[++depth] = caller;
+                        cursors[depth] = 0;
+                    }
+                    continue;
+                }
+                order[component] = next++;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @return the labels, or null if they together exceed the maximum number of intervals
+     */
+    private int[][] label(int[][] callers, int[] subtreeStart, long maxIntervals) {
+        int[][] labels = new int[callers.length][];
+        long total = 0;
+        for (int component = 0; component < labels.length; component++) { // callers have lower numbers, so their labels are ready
+            ProgressManager.checkCanceled();
+            labels[component] = join(subtreeStart[component], order[component], callers[component], labels);
+            total += labels[component].length / 2;
+            if (total > maxIntervals) {
+                return null;
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * @param start the start of the own interval of a component
+     * @param end the end of the own interval of a component
+     * @param callers the caller components of the component
+     * @param labels the labels of the callers
+     * @return the label of the component: its own interval joined with the labels of its callers
+     */
+    private static int[] join(int start, int end, int[] callers, int[][] labels) {
+        int size = 1;
+        for (int caller : callers) {
+            size += labels[caller].length / 2;
+        }
+        long[] intervals = new long[size]; // start in the high half, end in the low half, so they sort by start
+        intervals[0] = interval(start, end);
+        int filled = 1;
+        for (int caller : callers) {
+            int[] label = labels[caller];
+            for (int i = 0; i < label.length; i += 2) {
+                intervals[filled++] = interval(label[i], label[i + 1]);
+            }
+        }
+        return merge(intervals);
+    }
+
+    private static long countIntervals(int[][] labels) {
+        long total = 0;
+        for (int[] label : labels) {
+            total += label.length / 2;
+        }
+        return total;
+    }
+
+    private static long interval(int start, int end) {
+        return (long) start << 32 | end;
+    }
+
+    /**
+     * @param intervals intervals encoded by {@link #interval(int, int)}, in any order
+     * @return the intervals merged where they overlap or touch, as sorted start, end pairs
+     */
+    private static int[] merge(long[] intervals) {
+        Arrays.sort(intervals);
+        int[] merged = new int[intervals.length * 2];
+        int size = 0;
+        for (long interval : intervals) {
+            int start = (int) (interval >>> 32);
+            int end = (int) interval;
+            if (size > 0 && start <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], end);
+            } else {
+                merged[size++] = start;
+                merged[size++] = end;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Checks if there is a call path from one method to another. Every method reaches itself.
+     *
+     * @param from the id of the method the path starts at
+     * @param to the id of the method the path ends at
+     * @return true if the path exists, false otherwise
+     */
+    boolean canReach(int from, int to) {
+        int source = componentOf[from];
+        int target = componentOf[to];
+        if (source == target) {
+            return true;
+        }
+        if (ordered && source > target) { // callers are numbered lower than their callees
+            return false;
+        }
+        if (labels == null) {
+            return CallGraphEngine.findShortestPath(graph, from, to) != null;
+        }
+        int[] label = labels[target];
+        int number = order[source];
+        int low = 0;
+        int high = label.length / 2 - 1;
+        while (low <= high) { // the last interval starting at or before the number
+            int middle = (low + high) >>> 1;
+            if (label[2 * middle] <= number) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= 0 && number <= label[2 * high + 1];
+    }
+
+    /**
+     * Returns the index of a patched version of the indexed graph. Components keep their numbers and new methods
+     * become new components. Only the components reachable from a call that was added or removed are relabelled,
+     * in topological order, each from its own number and the labels of its callers; all other labels are shared.
+     *
+     * @param patched the indexed graph with the callees of some methods replaced and possibly methods added
+     * @return the index of the patched graph
+     */
+    ReachabilityIndex patch(CallGraph patched) {
+        int oldCount = graph.nodeCount();
+        int newCount = patched.nodeCount();
+        if (labels == null || newCount < oldCount) {
+            return new ReachabilityIndex(patched, maxIntervals);
+        }
+        int[] componentOf = Arrays.copyOf(this.componentOf, newCount);
+        int componentCount = order.length;
+        for (int method = oldCount; method < newCount; method++) {
+            componentOf[method] = componentCount++;
+        }
+        // the methods whose callers may reach them differently: callees of changed calls and all they call
+        BitSet affected = new BitSet(newCount);
+        int[] queue = new int[newCount];
+        int queued = 0;
+        for (int method = 0; method < newCount; method++) {
+            ProgressManager.checkCanceled();
+            if (method < oldCount) {
+                if (sameCallees(graph, patched, method)) {
+                    continue;
+                }
+                for (int i = 0; i < graph.calleeCount(method); i++) {
+                    int callee = graph.callee(method, i);
+                    if (componentOf[callee] == componentOf[method] && !calls(patched, method, callee)) {
+                        return new ReachabilityIndex(patched, maxIntervals); // the component may fall apart
+                    }
+                    queued = enqueue(callee, affected, queue, queued);
+                }
+            } else {
+                queued = enqueue(method, affected, queue, queued);
+            }
+            for (int i = 0; i < patched.calleeCount(method); i++) {
+                queued = enqueue(patched.callee(method, i), affected, queue, queued);
+            }
+        }
+        for (int next = 0; next < queued; next++) {
+            if (queued > newCount / MAX_PATCHED_SHARE) {
+                return new ReachabilityIndex(patched, maxIntervals);
+            }
+            int method = queue[next];
+            for (int i = 0; i < patched.calleeCount(method); i++) {
+                queued = enqueue(patched.callee(method, i), affected, queue, queued);
+            }
+        }
+        // the affected components, with their callers in the patched graph
+        int[] local = new int[componentCount]; // index of an affected component among the affected ones, or -1
+        Arrays.fill(local, -1);
+        int[] affectedComponents = new int[queued];
+        int affectedCount = 0;
+        for (int i = 0; i < queued; i++) {
+            int component = componentOf[queue[i]];
+            if (local[component] < 0) {
+                local[component] = affectedCount;
+                affectedComponents[affectedCount++] = component;
+            }
+        }
+        int[][] callers = new int[affectedCount][];
+        int[] lastSeenFrom = new int[componentCount]; // deduplicates the callers of the component being collected
+        Arrays.fill(lastSeenFrom, -1);
+        int[] buffer = new int[16];
+        int[] size = new int[affectedCount];
+        boolean ordered = this.ordered;
+        for (int i = 0; i < queued; i++) { // every member of an affected component is affected, as they call each other
+            int method = queue[i];
+            int component = componentOf[method];
+            int index = local[component];
+            if (callers[index] == null) {
+                callers[index] = new int[4];
+            }
+            for (int j = 0; j < patched.callerCount(method); j++) {
+                int caller = componentOf[patched.caller(method, j)];
+                if (caller != component && lastSeenFrom[caller] != component) {
+                    lastSeenFrom[caller] = component;
+                    ordered &= caller < component;
+                    if (size[index] == callers[index].length) {
+                        callers[index] = Arrays.copyOf(callers[index], size[index] * 2);
+                    }
+                    callers[index][size[index]++] = caller;
+                }
+            }
+        }
+        // topological order of the affected components, callers first; a cycle means components merged
+        int[] pending = new int[affectedCount]; // affected callers not labelled yet
+        int[][] callees = new int[affectedCount][];
+        int[] calleeCount = new int[affectedCount];
+        for (int index = 0; index < affectedCount; index++) {
+            callers[index] = Arrays.copyOf(callers[index], size[index]);
+            for (int caller : callers[index]) {
+                int callerIndex = local[caller];
+                if (callerIndex >= 0) {
+                    pending[index]++;
+                    if (callees[callerIndex] == null) {
+                        callees[callerIndex] = new int[4];
+                    } else if (calleeCount[callerIndex] == callees[callerIndex].length) {
+                        callees[callerIndex] = Arrays.copyOf(callees[callerIndex], calleeCount[callerIndex] * 2);
+                    }
+                    callees[callerIndex][calleeCount[callerIndex]++] = index;
+                }
+            }
+        }
+        int[] ready = new int[affectedCount];
+        int readyCount = 0;
+        for (int index = 0; index < affectedCount; index++) {
+            if (pending[index] == 0) {
+                ready[readyCount++] = index;
+            }
+        }
+        int[] order = Arrays.copyOf(this.order, componentCount);
+        for (int component = this.order.length; component < componentCount; component++) {
+            order[component] = component; // the old numbers are a permutation of the old components
+        }
+        int[][] labels = Arrays.copyOf(this.labels, componentCount);
+        long intervals = this.intervals;
+        for (int next = 0; next < readyCount; next++) {
+            ProgressManager.checkCanceled();
+            int index = ready[next];
+            int component = affectedComponents[index];
+            if (component < this.labels.length) {
+                intervals -= this.labels[component].length / 2;
+            }
+            labels[component] = join(order[component], order[component], callers[index], labels);
+            intervals += labels[component].length / 2;
+            for (int i = 0; i < calleeCount[index]; i++) {
+                int callee = callees[index][i];
+                if (--pending[callee] == 0) {
+                    ready[readyCount++] = callee;
+                }
+            }
+        }
+        if (readyCount < affectedCount || intervals > maxIntervals) {
+            return new ReachabilityIndex(patched, maxIntervals);
+        }
+        return new ReachabilityIndex(patched, maxIntervals, componentOf, ordered, order, labels, intervals);
+    }
+
+    private static int enqueue(int method, BitSet affected, int[] queue, int queued) {
+        if (!affected.get(method)) {
+            affected.set(method);
+            queue[queued++] = method;
+        }
+        return queued;
+    }
+
+    private static boolean sameCallees(CallGraph graph, CallGraph patched, int method) {
+        int count = graph.calleeCount(method);
+        if (patched.calleeCount(method) != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (graph.callee(method, i) != patched.callee(method, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean calls(CallGraph graph, int caller, int callee) {
+        for (int i = 0; i < graph.calleeCount(caller); i++) {
+            if (graph.callee(caller, i) == callee) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if questions are answered from labels, false if they exceeded the budget and a search answers them
+     */
+    boolean isLabeled() {
+        return labels != null;
+    }
+}
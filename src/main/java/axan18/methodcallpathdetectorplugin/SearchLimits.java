@@ -0,0 +1,18 @@
+package axan18.methodcallpathdetectorplugin;
+
+/**
+ * Limits of a call path search, letting the caller stop the enumeration as soon as it has enough results.
+ *
+ * @param maxPaths the maximum number of call paths reported
+ * @param maxDepth the maximum number of calls in a reported call path
+ */
+public record SearchLimits(int maxPaths, int maxDepth) {
+    public static final SearchLimits DEFAULT = new SearchLimits(50, 30);
+    public static final SearchLimits UNLIMITED = new SearchLimits(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    public SearchLimits {
+        if (maxPaths <= 0 || maxDepth <= 0) {
+            throw new IllegalArgumentException("Search limits must be positive: " + maxPaths + ", " + maxDepth);
+        }
+    }
+}
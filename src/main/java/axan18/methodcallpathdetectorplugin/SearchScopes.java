@@ -0,0 +1,90 @@
+package axan18.methodcallpathdetectorplugin;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.psi.search.scope.packageSet.NamedScope;
+import com.intellij.psi.search.scope.packageSet.NamedScopesHolder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Scopes of the searches of a call path query, narrowed by the module dependency graph.
+ * Every method on a call path is called, directly or not, by the start method, so it lives in the start method's module
+ * or in a module it depends on. The callers of a method are further limited to the modules depending on the method's
+ * module by the method's use scope, which the call site search applies itself.
+ */
+final class SearchScopes {
+    private static final Key<CustomScope> CUSTOM_SCOPE = Key.create("axan18.callPath.customScope");
+
+    /**
+     * The search scope built for a named scope. Caller lists are cached per scope and a filter scope is equal only
+     * to itself, so the same scope must be returned while the named scope stays the same.
+     *
+     * @param id the id of the named scope
+     * @param pattern the pattern of the named scope, which changes when the scope is edited
+     * @param scope the search scope of the named scope
+     */
+    private record CustomScope(String id, @Nullable String pattern, GlobalSearchScope scope) {
+    }
+
+    private SearchScopes() {
+    }
+
+    /**
+     * Returns the scope the callers of any method are searched in: the scope chosen in {@link CallPathSettings},
+     * limited to the start method's module and its dependencies. Libraries are never searched for callers.
+     *
+     * @param project the project of the query
+     * @param start the start method of the query, or null to use the chosen scope as it is
+     * @return the scope of caller searches
+     */
+    static @NotNull GlobalSearchScope callerScope(@NotNull Project project, @Nullable PsiMethod start) {
+        Module module = start != null ? ModuleUtilCore.findModuleForPsiElement(start) : null;
+        CallPathSettings settings = CallPathSettings.getInstance(project);
+        GlobalSearchScope selected = switch (settings.getCallerScope()) {
+            case PROJECT -> GlobalSearchScope.projectScope(project);
+            case MODULE -> module != null ? GlobalSearchScope.moduleScope(module) : GlobalSearchScope.projectScope(project);
+            case CUSTOM -> customScope(project, settings.getCustomScope());
+        };
+        return module != null ? selected.intersectWith(GlobalSearchScope.moduleWithDependenciesScope(module)) : selected;
+    }
+
+    /**
+     * Returns the scope target methods are looked up in: the start method's module with its dependencies and libraries,
+     * as a method the start method cannot see cannot be reached from it either.
+     *
+     * @param start the start method of the query
+     * @return the scope of target lookups
+     */
+    static @NotNull GlobalSearchScope targetScope(@NotNull PsiMethod start) {
+        Module module = ModuleUtilCore.findModuleForPsiElement(start);
+        return module != null
+                ? GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module)
+                : GlobalSearchScope.allScope(start.getProject());
+    }
+
+    /**
+     * Resolves a named scope, falling back to the project files if there is no scope with the specified id.
+     * The search scope is built once and reused until another scope is chosen or the chosen scope is edited.
+     */
+    private static GlobalSearchScope customScope(Project project, String id) {
+        NamedScope namedScope = id.isEmpty() ? null : NamedScopesHolder.getScope(project, id);
+        if (namedScope == null) {
+            return GlobalSearchScope.projectScope(project);
+        }
+        String pattern = namedScope.getValue() != null ? namedScope.getValue().getText() : null;
+        CustomScope cached = project.getUserData(CUSTOM_SCOPE);
+        if (cached == null || !cached.id().equals(id) || !Objects.equals(cached.pattern(), pattern)) {
+            cached = new CustomScope(id, pattern, GlobalSearchScopesCore.filterScope(project, namedScope));
+            project.putUserData(CUSTOM_SCOPE, cached);
+        }
+        return cached.scope();
+    }
+}
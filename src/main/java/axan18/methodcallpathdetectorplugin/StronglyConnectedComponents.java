@@ -0,0 +1,134 @@
+package axan18.methodcallpathdetectorplugin;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a call graph, computed over its callers with an iterative version of Tarjan's algorithm.
+ * Components are numbered in reverse topological order of the callers: a caller in another component than its callee
+ * always belongs to the component with the lower number.
+ */
+final class StronglyConnectedComponents {
+    private final int[] components; // component of every node
+    private final int[] memberOffsets; // members of component c are members[memberOffsets[c]..memberOffsets[c + 1])
+    private final int[] members;
+    private final int count;
+
+    /**
+     * @param graph the call graph, whose callers must all be lower than its node count
+     */
+    StronglyConnectedComponents(CallGraph graph) {
+        int nodeCount = graph.nodeCount();
+        components = new int[nodeCount];
+        int[] index = new int[nodeCount];
+        int[] low = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount]; // nodes of components not completed yet
+        int[] callStack = new int[nodeCount]; // replaces recursion, so deep call chains cannot overflow the thread stack
+        int[] cursors = new int[nodeCount];
+        Arrays.fill(index, -1);
+        int nextIndex = 0;
+        int stackSize = 0;
+        int componentCount = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            callStack[0] = root;
+            cursors[0] = 0;
+            index[root] = low[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int node = callStack[depth];
+                if (cursors[depth] < graph.callerCount(node)) {
+                    int successor = graph.caller(node, cursors[depth]++);
+                    if (index[successor] == -1) {
+                        index[successor] = low[successor] = nextIndex++;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callStack[++depth] = successor;
+                        cursors[depth] = 0;
+                    } else if (onStack[successor]) {
+                        low[node] = Math.min(low[node], index[successor]);
+                    }
+                    continue;
+                }
+                if (low[node] == index[node]) { // node is the root of a component, pop its members
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        components[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callStack[depth];
+                    low[parent] = Math.min(low[parent], low[node]);
+                }
+            }
+        }
+        count = componentCount;
+        memberOffsets = new int[count + 1];
+        for (int component : components) {
+            memberOffsets[component + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        members = new int[nodeCount];
+        int[] filled = Arrays.copyOf(memberOffsets, count);
+        for (int node = 0; node < nodeCount; node++) {
+            members[filled[components[node]]++] = node;
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    int componentOf(int node) {
+        return components[node];
+    }
+
+    int size(int component) {
+        return memberOffsets[component + 1] - memberOffsets[component];
+    }
+
+    int[] members(int component) {
+        return Arrays.copyOfRange(members, memberOffsets[component], memberOffsets[component + 1]);
+    }
+
+    /**
+     * Builds the condensed graph: the acyclic graph of components with an edge wherever a method calls
+     * a method of another component.
+     *
+     * @param graph the call graph the components were computed for
+     * @return the caller components of every component, without duplicates
+     */
+    int[][] condense(CallGraph graph) {
+        int[][] condensed = new int[count][];
+        int[] lastSeenFrom = new int[count]; // deduplicates edges of the component being built
+        Arrays.fill(lastSeenFrom, -1);
+        int[] buffer = new int[16];
+        for (int c = 0; c < count; c++) {
+            int size = 0;
+            for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+                for (int j = 0; j < graph.callerCount(members[i]); j++) {
+                    int target = components[graph.caller(members[i], j)];
+                    if (target != c && lastSeenFrom[target] != c) {
+                        lastSeenFrom[target] = c;
+                        if (size == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, size * 2);
+                        }
+                        buffer[size++] = target;
+                    }
+                }
+            }
+            condensed[c] = Arrays.copyOf(buffer, size);
+        }
+        return condensed;
+    }
+}
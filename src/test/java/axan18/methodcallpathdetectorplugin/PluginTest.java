@@ -2,25 +2,47 @@ package axan18.methodcallpathdetectorplugin;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.psi.search.scope.packageSet.NamedScope;
+import com.intellij.psi.search.scope.packageSet.NamedScopeManager;
+import com.intellij.psi.search.scope.packageSet.PackageSetFactory;
+import com.intellij.psi.search.scope.packageSet.ParsingException;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase5;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 public class PluginTest extends LightJavaCodeInsightFixtureTestCase5 {
 
@@ -394,6 +416,672 @@ public class PluginTest extends LightJavaCodeInsightFixtureTestCase5 {
         assertEquals(0, paths.size());
     }
 
+    @Test
+    void testMethodReference(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() {
+                Runnable r = this::interestingMethod;
+                r.run();
+            }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        List<List<String>> paths = getPath(target);
+        assertEquals(1, paths.size());
+        assertEquals(List.of("foo", "bar"), paths.get(0));
+    }
+    @Test
+    void testShortestPathEngine(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); abc(); }
+            void bar() { baz(); }
+            void baz() { interestingMethod(); }
+            void abc() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        List<List<String>> paths = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.findCallPaths(target, PathFinder.SearchEngine.SHORTEST_PATH)),
+                new EmptyProgressIndicator());
+        assertEquals(List.of(List.of("foo", "abc")), paths);
+    }
+    @Test
+    void testShortestPathDirectCall(){
+        String classCode = """
+        class XYZ{
+            void foo() { new Thread(() -> interestingMethod()).start(); bar(); interestingMethod(); }
+            void bar() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        List<List<String>> paths = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.findCallPaths(target, PathFinder.SearchEngine.SHORTEST_PATH)),
+                new EmptyProgressIndicator());
+        assertEquals(List.of(List.of("foo")), paths);
+    }
+    @Test
+    void testPathLimits(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); baz(); abc(); }
+            void bar() { interestingMethod(); }
+            void baz() { interestingMethod(); }
+            void abc() { bar(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        List<List<String>> paths = new ArrayList<>();
+        boolean completed = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.processCallPaths(target, new SearchLimits(2, 10), paths::add)),
+                new EmptyProgressIndicator());
+        assertFalse(completed);
+        assertEquals(2, paths.size());
+
+        paths.clear();
+        completed = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.processCallPaths(target, new SearchLimits(10, 2), paths::add)),
+                new EmptyProgressIndicator());
+        assertTrue(completed);
+        assertEquals(2, paths.size());
+        assertTrue(paths.stream().noneMatch(path -> path.contains("abc")));
+    }
+    @Test
+    void testKShortestPaths(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); baz(); abc(); }
+            void bar() { baz(); }
+            void baz() { interestingMethod(); }
+            void abc() { bar(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        List<List<String>> paths = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.findShortestCallPaths(target, 2)),
+                new EmptyProgressIndicator());
+        assertEquals(List.of(List.of("foo", "baz"), List.of("foo", "bar", "baz")), paths);
+
+        paths = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.findShortestCallPaths(target, 10)),
+                new EmptyProgressIndicator());
+        assertEquals(3, paths.size());
+        assertEquals(List.of("foo", "abc", "bar", "baz"), paths.get(2));
+    }
+    @Test
+    void testPathTrieSharesPrefixes(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); baz(); }
+            void bar() { baz(); }
+            void baz() { interestingMethod(); }
+            void interestingMethod(){ return; }
+            void interestingMethod(int i){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = readActionWrapper(() -> Arrays.stream(PsiShortNamesCache.getInstance(file.getProject())
+                .getMethodsByName("interestingMethod", GlobalSearchScope.allScope(file.getProject())))
+                .filter(method -> method.getParameterList().getParametersCount() == 0)
+                .findFirst()
+                .orElseThrow());
+        pathFinder.setStart(start);
+        CallPathTrie trie = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.collectCallPaths(target, SearchLimits.UNLIMITED)),
+                new EmptyProgressIndicator());
+        assertEquals(2, trie.getPathCount());
+        assertEquals(5, trie.getNodeCount()); // interestingMethod and baz are shared by both paths
+        assertTrue(readActionWrapper(() -> trie.getPath(0).get(0).equals(start)));
+    }
+    @Test
+    void testMultipleTargetsSinglePass(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { interestingMethod(); interestingMethod(1); }
+            void interestingMethod(){ return; }
+            void interestingMethod(int i){ return; }
+            void abc(long l) { interestingMethod(l); }
+            void interestingMethod(long l){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        Project project = file.getProject();
+        PsiMethod start = findMethodByName(project, "foo");
+        List<PsiMethod> targets = readActionWrapper(() -> Arrays.asList(PsiShortNamesCache.getInstance(project)
+                .getMethodsByName("interestingMethod", GlobalSearchScope.allScope(project))));
+        pathFinder.setStart(start);
+        List<Integer> taggedTargets = new ArrayList<>();
+        List<List<String>> paths = new ArrayList<>();
+        ProgressManager.getInstance().runProcess(
+                () -> ReadAction.run(() -> pathFinder.processCallPaths(targets, SearchLimits.DEFAULT, (target, path) -> {
+                    taggedTargets.add(target);
+                    paths.add(path);
+                    return true;
+                })),
+                new EmptyProgressIndicator());
+        assertEquals(2, paths.size());
+        assertTrue(paths.stream().allMatch(path -> path.equals(List.of("foo", "bar"))));
+        Set<Integer> expectedTargets = readActionWrapper(() -> {
+            Set<Integer> indices = new HashSet<>();
+            for (int i = 0; i < targets.size(); i++) {
+                if (targets.get(i).getParameterList().getParametersCount() == 0
+                        || targets.get(i).getParameterList().getParameters()[0].getType().getCanonicalText().equals("int")) {
+                    indices.add(i);
+                }
+            }
+            return indices;
+        });
+        assertEquals(expectedTargets, new HashSet<>(taggedTargets));
+    }
+    @Test
+    void testCondensedRecursion(){
+        String classCode = """
+        class XYZ{
+            void foo() { a(); }
+            void a() { b(); }
+            void b() { a(); c(); }
+            void c() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        CondensedCallPaths condensed = ProgressManager.getInstance().runProcess(
+                () -> ReadAction.compute(() -> pathFinder.findCondensedCallPaths(target, SearchLimits.UNLIMITED)),
+                new EmptyProgressIndicator());
+        assertEquals(1, condensed.getPathCount());
+        assertTrue(condensed.isRecursive(0));
+        List<String> names = readActionWrapper(() -> condensed.getPathNames(0));
+        assertEquals(3, names.size());
+        assertEquals("foo", names.get(0));
+        assertTrue(names.get(1).equals("{a, b}") || names.get(1).equals("{b, a}"));
+        assertEquals("c", names.get(2));
+
+        List<List<String>> expanded = new ArrayList<>();
+        ProgressManager.getInstance().runProcess(
+                () -> ReadAction.run(() -> pathFinder.processExpandedPaths(condensed, 0, SearchLimits.UNLIMITED, expanded::add)),
+                new EmptyProgressIndicator());
+        assertEquals(List.of(List.of("foo", "a", "b", "c")), expanded);
+    }
+    @Test
+    void testForwardReachability(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { baz(); }
+            void baz() { return; }
+            void abc() { interestingMethod(); }
+            void interestingMethod(){ foo(); }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        Set<String> reachable = readActionWrapper(() -> CalleeResolver.collectReachable(start).stream()
+                .map(PsiMethod::getName)
+                .collect(Collectors.toSet()));
+        assertEquals(Set.of("foo", "bar", "baz"), reachable);
+    }
+    @Test
+    void testReachabilityIndex(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { baz(); foo(); }
+            void baz() { interestingMethod(); }
+            void abc() { new Thread(() -> foo()).start(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        Project project = file.getProject();
+        PsiMethod foo = findMethodByName(project, "foo");
+        PsiMethod abc = findMethodByName(project, "abc");
+        PsiMethod target = findMethodByName(project, "interestingMethod");
+        ProjectCallGraph graph = ProjectCallGraph.getInstance(project);
+        readActionWrapper(() -> {
+            graph.update();
+            return null;
+        });
+        assertTrue(graph.isUpToDate());
+        assertEquals(Boolean.TRUE, readActionWrapper(() -> graph.canReach(foo, target)));
+        assertEquals(Boolean.FALSE, readActionWrapper(() -> graph.canReach(target, foo)));
+        assertEquals(Boolean.FALSE, readActionWrapper(() -> graph.canReach(abc, target))); // called in a new thread
+        assertTrue(readActionWrapper(() -> PathFinder.canReach(foo, target)));
+    }
+    @Test
+    void testCallGraphPatchedAfterEdit(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { return; }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        Project project = file.getProject();
+        PsiMethod start = findMethodByName(project, "foo");
+        PsiMethod bar = findMethodByName(project, "bar");
+        PsiMethod target = findMethodByName(project, "interestingMethod");
+        ProjectCallGraph graph = ProjectCallGraph.getInstance(project);
+        readActionWrapper(() -> {
+            graph.update();
+            return null;
+        });
+        assertEquals(Boolean.FALSE, readActionWrapper(() -> graph.canReach(start, target)));
+        pathFinder.setStart(start);
+        assertEquals(0, getPath(target).size()); // caches the callers of the target
+        WriteCommandAction.runWriteCommandAction(project, () -> bar.getBody().add(JavaPsiFacade.getElementFactory(project)
+                .createStatementFromText("interestingMethod();", bar)));
+        assertFalse(graph.isUpToDate());
+        readActionWrapper(() -> {
+            graph.update();
+            return null;
+        });
+        assertEquals(Boolean.TRUE, readActionWrapper(() -> graph.canReach(start, target)));
+        assertEquals(1, getPath(target).size());
+    }
+    @Test
+    void testCallGraphPrewarmed(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        Project project = file.getProject();
+        ProjectCallGraph graph = ProjectCallGraph.getInstance(project);
+        CallGraphPrewarmer.prewarm(project); // the light project is smart, so runWhenSmart schedules the update at once
+        PlatformTestUtil.waitForPromise(graph.scheduleUpdate()); // the update scheduled by the prewarmer
+        assertTrue(graph.isUpToDate());
+        assertEquals(Boolean.TRUE, readActionWrapper(() -> graph.canReach(findMethodByName(project, "foo"),
+                findMethodByName(project, "interestingMethod"))));
+    }
+    @Test
+    void testCallGraphOutdatedByDeletedDirectory(){
+        Project project = getFixture().configureByText("XYZ.java", """
+        class XYZ{
+            void interestingMethod(){ return; }
+        }""").getProject();
+        VirtualFile directory = getFixture().addFileToProject("calls/Caller.java", """
+        class Caller{
+            void foo() { new XYZ().interestingMethod(); }
+        }""").getVirtualFile().getParent();
+        ProjectCallGraph graph = ProjectCallGraph.getInstance(project);
+        readActionWrapper(() -> {
+            graph.update();
+            return null;
+        });
+        assertTrue(graph.isUpToDate());
+        WriteCommandAction.runWriteCommandAction(project, () -> {
+            try {
+                directory.delete(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertFalse(graph.isUpToDate()); // only the directory deletion was reported, the file under it is walked
+    }
+    @Test
+    void testCallGraphSnapshotRestored() throws IOException {
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        Project project = getFixture().configureByText("XYZ.java", classCode).getProject();
+        PsiMethod start = findMethodByName(project, "foo");
+        PsiMethod target = findMethodByName(project, "interestingMethod");
+        Path path = Files.createTempDirectory("callPathGraph").resolve("graph.bin");
+        PsiCallGraphBuilder builder = new PsiCallGraphBuilder(project);
+        readActionWrapper(builder::build);
+        builder.save(path, 0);
+        PsiCallGraphBuilder restored = new PsiCallGraphBuilder(project);
+        PsiCallGraphBuilder.Result result = readActionWrapper(() -> {
+            assertTrue(restored.load(path, 0));
+            return restored.build();
+        });
+        assertEquals(0, restored.getExtractedFileCount());
+        ReachabilityIndex reachability = new ReachabilityIndex(result.graph());
+        assertTrue(readActionWrapper(() -> reachability.canReach(result.idOf(start), result.idOf(target))));
+        assertFalse(readActionWrapper(() -> reachability.canReach(result.idOf(target), result.idOf(start))));
+    }
+    @Test
+    void testCsrCallGraphEngine(){
+        // 0 calls 1 and 2, both of them call 3, 1 and 4 call each other, the call from 0 to 1 is added twice
+        CsrCallGraph graph = new CsrCallGraph.Builder()
+                .addCall(0, 1).addCall(0, 2).addCall(1, 3).addCall(2, 3).addCall(1, 4).addCall(4, 1).addCall(0, 1)
+                .build(5);
+        assertEquals(6, graph.getCallCount());
+        List<String> paths = new ArrayList<>();
+        CallGraphEngine.enumeratePaths(graph, 3, 0, new BitSet(), Integer.MAX_VALUE, CallGraphEngine.CallFilter.ALL,
+                (branch, length) -> paths.add(Arrays.toString(Arrays.copyOf(branch, length))));
+        assertEquals(List.of("[3, 1, 0]", "[3, 2, 0]"), paths);
+        assertEquals(3, CallGraphEngine.findShortestPath(graph, 0, 3).length);
+        ReachabilityIndex reachability = new ReachabilityIndex(graph);
+        assertTrue(reachability.canReach(4, 3));
+        assertFalse(reachability.canReach(3, 0));
+        assertTrue(reachability.isLabeled());
+        ReachabilityIndex unlabeled = new ReachabilityIndex(graph, 0); // over budget, answered by a search
+        assertFalse(unlabeled.isLabeled());
+        assertTrue(unlabeled.canReach(4, 3));
+        assertTrue(unlabeled.canReach(1, 4));
+        assertFalse(unlabeled.canReach(3, 0));
+    }
+    @Test
+    void testReachabilityIndexPatched(){
+        CsrCallGraph.Builder builder = new CsrCallGraph.Builder();
+        for (int method = 0; method < 39; method++) { // two chains: 0 to 19 and 20 to 39
+            if (method != 19) {
+                builder.addCall(method, method + 1);
+            }
+        }
+        CsrCallGraph graph = builder.build(40);
+        ReachabilityIndex reachability = new ReachabilityIndex(graph);
+        assertFalse(reachability.canReach(20, 19));
+        int[][] rows = new int[41][];
+        rows[37] = new int[]{38, 17};
+        CsrCallGraph joined = graph.withCallees(40, rows);
+        ReachabilityIndex patched = reachability.patch(joined);
+        assertTrue(patched.isLabeled());
+        assertTrue(patched.canReach(20, 19));
+        assertTrue(patched.canReach(37, 17));
+        assertFalse(patched.canReach(0, 39));
+        assertFalse(patched.canReach(17, 37));
+        rows[37] = new int[]{38};
+        rows[40] = new int[]{0};
+        ReachabilityIndex split = patched.patch(joined.withCallees(41, rows));
+        assertFalse(split.canReach(20, 19));
+        assertTrue(split.canReach(40, 19)); // a new method
+        int[][] cycle = new int[20][]; // shorter than the graph, the other rows are copied
+        cycle[19] = new int[]{0};
+        ReachabilityIndex cyclic = split.patch(joined.withCallees(41, cycle));
+        assertTrue(cyclic.canReach(19, 5)); // the chain became a cycle, so the index was built again
+        assertTrue(cyclic.canReach(20, 19));
+    }
+    @Test
+    void testCallersCached(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        assertEquals(1, getPath(target).size());
+        List<PsiMethod> callers = readActionWrapper(() -> CallerCache.getInstance(file.getProject())
+                .getCallers(target, SearchScopes.callerScope(file.getProject(), start),
+                        method -> fail("callers should be served from the cache")));
+        assertEquals(1, callers.size());
+        assertEquals("bar", callers.get(0).getName());
+    }
+    @Test
+    void testBoundedCache(){
+        BoundedCache<String, String> cache = new BoundedCache<>(30, (key, value) -> value.length());
+        for (String key : List.of("a", "b", "c", "d")) {
+            assertEquals(key.repeat(10), cache.get(key, k -> k.repeat(10)));
+        }
+        BoundedCache.Stats stats = cache.getStats();
+        assertEquals(3, stats.strongEntries()); // "a" is the least recently used, demoted to a soft reference
+        assertEquals(1, stats.softEntries());
+        assertEquals(30, stats.strongBytes());
+        assertEquals(4, stats.misses());
+        assertEquals(1, stats.evictions());
+        assertEquals("aaaaaaaaaa", cache.getIfPresent("a")); // promoted back, demoting "b"
+        assertEquals("cccccccccc", cache.get("c", k -> fail("c should be cached")));
+        stats = cache.getStats();
+        assertEquals(1, stats.softHits());
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.evictions());
+        cache.setBudget(10);
+        assertEquals(1, cache.getStats().strongEntries());
+        cache.removeIf((key, value) -> !key.equals("c"));
+        assertEquals(1, cache.size());
+        assertEquals(null, cache.getIfPresent("a"));
+    }
+    @Test
+    void testCallerScopeSetting(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); }
+            void bar() { interestingMethod(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        Project project = file.getProject();
+        CallPathSettings settings = CallPathSettings.getInstance(project);
+        NamedScopeManager scopes = NamedScopeManager.getInstance(project);
+        try {
+            settings.setCallerScope(CallPathSettings.CallerScope.MODULE);
+            pathFinder.setStart(start);
+            assertEquals(List.of(List.of("foo", "bar")), getPath(target));
+            settings.setCallerScope(CallPathSettings.CallerScope.CUSTOM);
+            settings.setCustomScope("no such scope"); // falls back to the project files
+            pathFinder.setStart(start);
+            assertEquals(List.of(List.of("foo", "bar")), getPath(target));
+            scopes.addScope(new NamedScope("Sources", PackageSetFactory.getInstance().compile("src:*..*")));
+            settings.setCustomScope("Sources");
+            pathFinder.setStart(start);
+            assertEquals(List.of(List.of("foo", "bar")), getPath(target));
+            assertSame(readActionWrapper(() -> SearchScopes.callerScope(project, null)),
+                    readActionWrapper(() -> SearchScopes.callerScope(project, null))); // so cached callers are found
+        } catch (ParsingException e) {
+            throw new AssertionError(e);
+        } finally {
+            scopes.removeAllSets();
+            settings.loadState(new CallPathSettings.Options());
+        }
+    }
+    @Test
+    void testAsyncBoundaryRules(){
+        String classCode = """
+        class XYZ{
+            void foo() { int[] counts = new int[3]; later(() -> interestingMethod()); bar(); }
+            void bar() { interestingMethod(); }
+            void later(Runnable task) { task.run(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        CallPathSettings settings = CallPathSettings.getInstance(file.getProject());
+        pathFinder.setStart(start);
+        assertEquals(Set.of(List.of("foo"), List.of("foo", "bar")), new HashSet<>(getPath(target))); // arrays are no threads
+        try {
+            List<String> rules = new ArrayList<>(settings.getAsyncBoundaryRules());
+            rules.add("XYZ#later");
+            settings.setAsyncBoundaryRules(rules);
+            pathFinder.setStart(start);
+            assertEquals(List.of(List.of("foo", "bar")), getPath(target));
+        } finally {
+            settings.loadState(new CallPathSettings.Options());
+        }
+    }
+    @Test
+    void testOwnSubmitMethodIsNoBoundary(){
+        String classCode = """
+        class XYZ{
+            void foo() { submit(() -> interestingMethod()); }
+            void submit(Runnable task) { task.run(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        pathFinder.setStart(start);
+        assertEquals(List.of(List.of("foo")), getPath(target)); // only executors' submit runs asynchronously
+    }
+    @Test
+    void testNewSearchSupersedesRunningOne(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); baz(); }
+            void bar() { interestingMethod(); }
+            void baz() { bar(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        Project project = file.getProject();
+        PsiMethod start = findMethodByName(project, "foo");
+        PsiMethod target = findMethodByName(project, "interestingMethod");
+        CallPathSearchService service = CallPathSearchService.getInstance(project);
+        List<List<String>> paths = Collections.synchronizedList(new ArrayList<>());
+        CallPathSearchService.Search first = service.searchAll(new PathFinder(start, new QueryStats("first")),
+                List.of(target), SearchLimits.DEFAULT, new EmptyProgressIndicator(), (index, path) -> {});
+        CallPathSearchService.Search second = service.searchAll(new PathFinder(start, new QueryStats("second")),
+                List.of(target), SearchLimits.DEFAULT, new EmptyProgressIndicator(), (index, path) -> paths.add(path));
+        first.cancel(); // as the task of the replaced search does when it ends
+        PlatformTestUtil.waitForPromise(second.getPromise());
+        assertEquals(Set.of(List.of("foo", "bar"), List.of("foo", "baz", "bar")), new HashSet<>(paths));
+    }
+    @Test
+    void testQueryStats(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); baz(); }
+            void bar() { interestingMethod(); }
+            void baz() { bar(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        PsiMethod start = findMethodByName(file.getProject(), "foo");
+        PsiMethod target = findMethodByName(file.getProject(), "interestingMethod");
+        ProjectCallGraph graph = ProjectCallGraph.getInstance(file.getProject());
+        readActionWrapper(() -> {
+            graph.update();
+            return null;
+        });
+        QueryStats cold = new QueryStats("cold");
+        QueryStats warm = new QueryStats("warm");
+        for (QueryStats stats : List.of(cold, warm)) {
+            PathFinder finder = new PathFinder(start, stats);
+            ProgressManager.getInstance().runProcess(() -> ReadAction.compute(
+                    () -> finder.processCallPaths(target, SearchLimits.DEFAULT, path -> true)), new EmptyProgressIndicator());
+        }
+        assertEquals(2, cold.getPathsFound());
+        assertEquals(3, cold.getMethodsExpanded()); // interestingMethod, bar, baz
+        assertTrue(cold.getCacheMisses() > 0);
+        assertEquals(0, cold.getReferencesScanned()); // the callers come from the project call graph
+        assertTrue(cold.getPeakFrontier() >= 1);
+        assertEquals(0, warm.getCacheMisses());
+        assertEquals(3, warm.getCacheHits());
+        assertEquals(0, warm.getReferencesScanned());
+        assertTrue(warm.toJson().startsWith("{\"query\":\"warm\",\"startedAt\":"));
+        assertTrue(warm.toJson().contains("\"cacheHits\":3,"));
+
+        QueryDiagnostics diagnostics = QueryDiagnostics.getInstance(file.getProject());
+        diagnostics.record(warm);
+        assertSame(warm, diagnostics.getQueries().get(0));
+        diagnostics.clear();
+        assertTrue(diagnostics.getQueries().isEmpty());
+    }
+    @Test
+    void testCallPathResults(){
+        String classCode = """
+        class XYZ{
+            void foo() { bar(); baz(); }
+            void bar() { interestingMethod(); }
+            void baz() { bar(); }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        Project project = file.getProject();
+        PsiMethod start = findMethodByName(project, "foo");
+        PsiMethod target = findMethodByName(project, "interestingMethod");
+        CallPathResults results = new CallPathResults(project, "foo -> interestingMethod", SearchLimits.DEFAULT.maxPaths());
+        results.targetStarted(0, "XYZ.interestingMethod()");
+        ProgressManager.getInstance().runProcess(() -> ReadAction.compute(() -> new PathFinder(start).processCallPathMethods(
+                List.of(target), SearchLimits.DEFAULT, (index, methods) -> {
+                    results.addPath(index, methods);
+                    return true;
+                })), new EmptyProgressIndicator());
+        results.setState(CallPathResults.State.FINISHED);
+        assertEquals(2, results.getPathCount(0));
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < results.getPathCount(0); i++) {
+            int[] path = results.getPath(0, i);
+            paths.add(Arrays.stream(path).mapToObj(results::getMethodName).collect(Collectors.joining(" -> ")));
+        }
+        assertEquals(Set.of("XYZ.foo() -> XYZ.bar() -> XYZ.interestingMethod()",
+                "XYZ.foo() -> XYZ.baz() -> XYZ.bar() -> XYZ.interestingMethod()"), paths);
+        int[] path = results.getPath(0, 0);
+        assertSame(start, readActionWrapper(() -> results.getMethod(path[0])));
+
+        int generation = results.getGeneration(0);
+        results.targetStarted(0, "XYZ.interestingMethod()"); // a restart drops the paths found so far
+        assertTrue(results.getGeneration(0) != generation);
+        assertEquals(0, results.getPathCount(0));
+        assertEquals(null, results.getPath(0, 0));
+
+        PsiMethod bar = findMethodByName(project, "bar");
+        assertEquals("interestingMethod()", readActionWrapper(() -> CalleeResolver.findCall(bar, target,
+                call -> PathFinder.isDirectCall(bar, call)).getText()));
+        assertEquals(null, readActionWrapper(() -> CalleeResolver.findCall(bar, start,
+                call -> PathFinder.isDirectCall(bar, call))));
+    }
+
+    @Test
+    void testCallPathBatch() throws IOException {
+        String classCode = """
+        class XYZ{
+            void foo() { bar(1); }
+            void bar(int x) { interestingMethod(); }
+            void bar(String s) { }
+            void baz() { }
+            void interestingMethod(){ return; }
+        }""";
+        PsiFile file = getFixture().configureByText("XYZ.java", classCode);
+        List<CallPathBatch.Pair> pairs = CallPathBatch.parsePairs(List.of(
+                "# start -> target",
+                "XYZ#foo() -> XYZ#interestingMethod()",
+                "XYZ#foo -> XYZ#bar( java.lang.String )",
+                "XYZ#baz -> XYZ#interestingMethod",
+                "",
+                "XYZ#missing -> XYZ#interestingMethod",
+                "XYZ#foo -> XYZ#missing"));
+        assertEquals(5, pairs.size());
+        assertEquals("XYZ#bar(java.lang.String)", pairs.get(1).target());
+        ProjectCallGraph.Snapshot snapshot = ProgressManager.getInstance().runProcess(() -> ReadAction.compute(
+                () -> ProjectCallGraph.getInstance(file.getProject()).getUpToDateSnapshot()), new EmptyProgressIndicator());
+        List<CallPathBatch.Answer> answers = CallPathBatch.answer(snapshot, pairs, true);
+        assertEquals(List.of(CallPathBatch.Status.REACHABLE, CallPathBatch.Status.UNREACHABLE,
+                CallPathBatch.Status.UNREACHABLE, CallPathBatch.Status.START_NOT_FOUND,
+                CallPathBatch.Status.TARGET_NOT_FOUND), answers.stream().map(CallPathBatch.Answer::status).toList());
+        assertEquals(List.of("XYZ#foo()", "XYZ#bar(int)", "XYZ#interestingMethod()"), answers.get(0).path());
+
+        StringWriter csv = new StringWriter();
+        CallPathBatch.writeCsv(answers.subList(0, 1), csv);
+        assertEquals("start,target,status,path\n"
+                + "XYZ#foo(),XYZ#interestingMethod(),REACHABLE,XYZ#foo() -> XYZ#bar(int) -> XYZ#interestingMethod()\n",
+                csv.toString());
+        StringWriter json = new StringWriter();
+        CallPathBatch.writeJson(answers.subList(1, 2), json);
+        assertEquals("[\n  {\"start\": \"XYZ#foo\", \"target\": \"XYZ#bar(java.lang.String)\", "
+                + "\"status\": \"UNREACHABLE\", \"path\": []}\n]\n", json.toString());
+        assertThrows(IllegalArgumentException.class, () -> CallPathBatch.parsePairs(List.of("XYZ#foo XYZ#bar")));
+    }
+
     private List<List<String>> getPath(PsiMethod target) {
         return ProgressManager.getInstance().runProcess(
                 () -> ReadAction.compute(() ->